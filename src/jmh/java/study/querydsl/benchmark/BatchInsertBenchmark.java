@@ -0,0 +1,96 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberBatchService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 한 건마다 INSERT 가 나가는 저장(persist + flush)과 시퀀스 + JDBC 배치 저장(MemberBatchService)의 초당 저장 건수
+ *
+ * ./gradlew jmh -PjmhIncludes=BatchInsertBenchmark
+ * 점수는 초당 행 수다. 테이블이 계속 커지지 않도록 반복(iteration)마다 넣은 회원을 지운다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchInsertBenchmark {
+
+    static final int ROWS = 1_000;
+
+    @Param({"0"})
+    int memberCount;
+
+    BenchmarkEnvironment env;
+    MemberBatchService memberBatchService;
+    Long teamId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = BenchmarkEnvironment.start(memberCount, 1);
+        memberBatchService = env.getBean(MemberBatchService.class);
+        teamId = env.tx.execute(status -> {
+            Team team = new Team("insertTeam");
+            env.em.persist(team);
+            return team.getId();
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInserted() {
+        env.tx.executeWithoutResult(status -> env.queryFactory
+                .delete(member)
+                .where(member.username.startsWith("insert"))
+                .execute());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    /*IDENTITY 전략처럼 한 건마다 INSERT 한 문장*/
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void singleRowInsert() {
+        env.tx.executeWithoutResult(status -> {
+            for (Member m : members()) {
+                env.em.persist(m);
+                env.em.flush();
+            }
+            env.em.clear();
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int batchedInsert() {
+        return env.tx.execute(status -> memberBatchService.saveAll(members()));
+    }
+
+    private List<Member> members() {
+        Team team = env.em.getReference(Team.class, teamId);
+        List<Member> members = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            members.add(new Member("insert" + i, i % 100, team));
+        }
+        return members;
+    }
+
+}
@@ -0,0 +1,96 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberBatchService;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 벤치마크용 스프링 컨텍스트
+ *
+ * TCP H2 대신 프로세스 내 메모리 H2 를 사용하고, SQL 로그(show_sql, p6spy)는 측정에 영향을 주므로 끈다.
+ * 팀 teamCount 개와 회원 memberCount 명을 팀에 골고루 나눠서 저장한다.
+ */
+public class BenchmarkEnvironment implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    public final EntityManager em;
+    public final JPAQueryFactory queryFactory;
+    public final TransactionTemplate tx;
+
+    private BenchmarkEnvironment(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.em = context.getBean(EntityManager.class);
+        this.queryFactory = context.getBean(JPAQueryFactory.class);
+        this.tx = context.getBean(TransactionTemplate.class);
+    }
+
+    /**
+     * @param extraArgs --key=value 형식, 같은 키면 기본 설정을 덮어쓴다.
+     */
+    public static BenchmarkEnvironment start(int memberCount, int teamCount, String... extraArgs) {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("spring.datasource.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        options.put("spring.jpa.properties.hibernate.show_sql", "false");
+        options.put("spring.jpa.properties.hibernate.format_sql", "false");
+        options.put("spring.jpa.properties.hibernate.use_sql_comments", "false");
+        options.put("decorator.datasource.enabled", "false");
+        options.put("logging.level.root", "warn");
+        options.put("logging.level.org.hibernate.Sql", "warn");
+        for (String arg : extraArgs) {
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        List<String> args = new ArrayList<>();
+        options.forEach((key, value) -> args.add("--" + key + "=" + value));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+
+        BenchmarkEnvironment env = new BenchmarkEnvironment(context);
+        env.seed(memberCount, teamCount);
+        return env;
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    private void seed(int memberCount, int teamCount) {
+        MemberBatchService memberBatchService = context.getBean(MemberBatchService.class);
+        tx.executeWithoutResult(status -> {
+            List<Team> teams = new ArrayList<>(teamCount);
+            for (int i = 0; i < teamCount; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                teams.add(team);
+            }
+
+            List<Member> members = new ArrayList<>(memberCount);
+            for (int i = 0; i < memberCount; i++) {
+                members.add(new Member("member" + i, i % 100, teams.get(i % teamCount)));
+            }
+            memberBatchService.saveAll(members);
+        });
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+}
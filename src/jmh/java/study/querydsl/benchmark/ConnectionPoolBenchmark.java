@@ -0,0 +1,117 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 동시 클라이언트 수에 따른 처리량 (기본 설정 vs prod 프로파일)
+ *
+ * 1 op = 트랜잭션 하나에서 IN 목록 조회(목록 크기 1~20 무작위) + subQueryIn 형태 조회
+ * prod 는 코어 수 기반 풀 크기, QUERY_CACHE_SIZE, in_clause_parameter_padding 을 사용한다.
+ * ./gradlew jmh -PjmhIncludes=ConnectionPoolBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConnectionPoolBenchmark {
+
+    @Param({"default", "prod"})
+    String profile;
+
+    BenchmarkEnvironment env;
+    JPAQueryFactory queryFactory;
+    long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("prod".equals(profile)) {
+            env = BenchmarkEnvironment.start(10000, 10,
+                    "--spring.profiles.active=prod",
+                    "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=256",
+                    "--spring.jpa.hibernate.ddl-auto=create");
+        } else {
+            env = BenchmarkEnvironment.start(10000, 10);
+        }
+        queryFactory = env.queryFactory;
+        firstId = env.tx.execute(status -> queryFactory.select(member.id.min()).from(member).fetchOne());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int clients1() {
+        return work();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int clients4() {
+        return work();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int clients16() {
+        return work();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int clients64() {
+        return work();
+    }
+
+    private int work() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = random.nextInt(1, 21);
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(firstId + random.nextInt(10000));
+        }
+        int age = random.nextInt(100);
+
+        QMember memberSub = new QMember("memberSub");
+        return env.tx.execute(status -> {
+            List<Member> byIds = queryFactory
+                    .selectFrom(member)
+                    .where(member.id.in(ids))
+                    .fetch();
+            List<Long> inSubQuery = queryFactory
+                    .select(member.id)
+                    .from(member)
+                    .where(member.age.in(
+                            JPAExpressions
+                                    .select(memberSub.age)
+                                    .from(memberSub)
+                                    .where(memberSub.age.eq(age))))
+                    .limit(10)
+                    .fetch();
+            return byIds.size() + inSubQuery.size();
+        });
+    }
+
+}
@@ -0,0 +1,75 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberQueryRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 마지막 페이지 근처(깊은 페이지)를 offset 과 키셋으로 조회하는 시간
+ *
+ * ./gradlew jmh -PjmhIncludes=KeysetPagingBenchmark
+ * offset 은 앞의 행을 모두 읽고 버리지만, 키셋은 (age, username, id) 인덱스에서 이전 페이지 마지막 키 위치부터 읽는다.
+ *
+ * H2(MVStore)는 조건 없이 인덱스 순서로 읽는 offset 을 B-tree 페이지의 건수로 건너뛰므로 이 경우 둘의 차이가 거의 없다.
+ * 읽은 행 수(EXPLAIN ANALYZE scanCount)는 5만 건에서 offset 50000, 키셋 501 정도이고,
+ * 건너뛰기를 지원하지 않는 DB 나 조건이 붙은 offset 에서는 이 차이가 그대로 시간 차이가 된다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeysetPagingBenchmark {
+
+    static final int PAGE_SIZE = 20;
+
+    @Param({"50000"})
+    int memberCount;
+
+    BenchmarkEnvironment env;
+    MemberQueryRepository memberQueryRepository;
+    int deepOffset;
+    String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = BenchmarkEnvironment.start(memberCount, 10);
+        memberQueryRepository = env.getBean(MemberQueryRepository.class);
+        deepOffset = memberCount - PAGE_SIZE;
+        //앞의 deepOffset 건을 한 페이지로 읽어서 그 다음 페이지의 토큰을 얻는다.
+        token = env.tx.execute(status -> memberQueryRepository.searchByKeyset(null, deepOffset, false).getNextToken());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    @Benchmark
+    public List<Member> offsetPage() {
+        return env.tx.execute(status -> env.queryFactory
+                .selectFrom(member)
+                .orderBy(member.age.asc(), member.username.asc().nullsFirst(), member.id.asc())
+                .offset(deepOffset)
+                .limit(PAGE_SIZE)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<Member> keysetPage() {
+        return env.tx.execute(status -> memberQueryRepository.searchByKeyset(token, PAGE_SIZE, false).getContent());
+    }
+
+}
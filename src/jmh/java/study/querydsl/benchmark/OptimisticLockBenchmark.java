@@ -0,0 +1,131 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.dao.OptimisticLockingFailureException;
+import study.querydsl.entity.Member;
+import study.querydsl.service.OptimisticRetryExecutor;
+
+import javax.persistence.LockModeType;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 동시 회원 변경 처리량 (낙관적 락 + 재시도 vs select ... for update)
+ *
+ * 1 op = 회원 한 명의 나이를 1 올리는 요청 하나
+ * 재시도를 다 쓰고도 충돌한 요청도 기본 점수에는 1 op 로 들어가므로, 두 방식은 커밋된 변경만 센 committed(ops/s)로 비교한다.
+ * optimisticRetry 는 재시도 횟수(retries)와 포기한 요청 수(exhausted)도 결과 JSON 의 보조 지표로 남긴다.
+ * hotMembers 는 스레드들이 나눠서 고치는 회원 수, 1 이면 모든 스레드가 같은 행을 두고 경쟁한다.
+ * ./gradlew jmh -PjmhIncludes=OptimisticLockBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class OptimisticLockBenchmark {
+
+    @Param({"1", "100"})
+    int hotMembers;
+
+    BenchmarkEnvironment env;
+    OptimisticRetryExecutor retryExecutor;
+    long firstId;
+
+    /**
+     * 커밋된 변경 수, 초당 처리량으로 보고된다.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Committed {
+
+        public long committed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            committed = 0;
+        }
+    }
+
+    /**
+     * 낙관적 락 충돌로 다시 실행한 횟수와 재시도를 다 쓰고 실패한 요청 수, 반복(iteration)마다의 합계로 보고된다.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+
+        public long retries;
+        public long exhausted;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retries = 0;
+            exhausted = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = BenchmarkEnvironment.start(1000, 10);
+        retryExecutor = env.getBean(OptimisticRetryExecutor.class);
+        firstId = env.tx.execute(status -> env.queryFactory.select(member.id.min()).from(member).fetchOne());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    /**
+     * MemberUpdateService.addAge 와 같은 변경, 스레드별로 시도 횟수를 세려고 콜백을 직접 넘긴다.
+     */
+    @Benchmark
+    public int optimisticRetry(Committed ops, Conflicts conflicts) {
+        Long id = nextId();
+        int[] attempts = {0};
+        try {
+            int age = retryExecutor.execute(status -> {
+                attempts[0]++;
+                Member m = env.em.find(Member.class, id);
+                m.setAge(m.getAge() + 1);
+                return m.getAge();
+            });
+            ops.committed++;
+            return age;
+        } catch (OptimisticLockingFailureException e) {
+            conflicts.exhausted++;
+            return -1;
+        } finally {
+            conflicts.retries += attempts[0] - 1;
+        }
+    }
+
+    @Benchmark
+    public int pessimisticLock(Committed ops) {
+        Long id = nextId();
+        int age = env.tx.execute(status -> {
+            Member m = env.em.find(Member.class, id, LockModeType.PESSIMISTIC_WRITE);
+            m.setAge(m.getAge() + 1);
+            return m.getAge();
+        });
+        ops.committed++;
+        return age;
+    }
+
+    private Long nextId() {
+        return firstId + ThreadLocalRandom.current().nextInt(hotMembers);
+    }
+
+}
@@ -0,0 +1,71 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.projection.DtoProjections;
+
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 행 하나를 DTO 로 만드는 비용 (DB 없이 FactoryExpression.newInstance 만 측정)
+ *
+ * gc 프로파일러의 gc.alloc.rate.norm 이 행당 할당 바이트이다.
+ * DtoProjections 는 DTO 크기만큼만 할당되어야 한다.
+ * ./gradlew jmh -PjmhIncludes=ProjectionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProjectionBenchmark {
+
+    final FactoryExpression<MemberDto> bean = Projections.bean(MemberDto.class, member.username, member.age);
+    final FactoryExpression<MemberDto> fields = Projections.fields(MemberDto.class, member.username, member.age);
+    final FactoryExpression<MemberDto> constructor = Projections.constructor(MemberDto.class, member.username, member.age);
+    final FactoryExpression<MemberDto> queryProjection = new QMemberDto(member.username, member.age);
+    final FactoryExpression<MemberDto> lambdaConstructor = DtoProjections.constructor(MemberDto.class, member.username, member.age);
+    final FactoryExpression<MemberDto> lambdaBean = DtoProjections.bean(MemberDto.class, member.username, member.age);
+
+    /*JDBC 결과 한 행 (Hibernate 가 만들어서 넘겨주는 배열과 박싱된 값)*/
+    final Object[] row = {"member1", 10};
+
+    @Benchmark
+    public MemberDto projectionBean() {
+        return bean.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto projectionFields() {
+        return fields.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto projectionConstructor() {
+        return constructor.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto queryProjection() {
+        return queryProjection.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto lambdaConstructor() {
+        return lambdaConstructor.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto lambdaBean() {
+        return lambdaBean.newInstance(row);
+    }
+
+}
@@ -0,0 +1,151 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.projection.DtoProjections;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * QuerydslApplicationTests 의 쿼리 형태별 처리량
+ *
+ * ./gradlew jmh
+ * ./gradlew jmh -PjmhIncludes=QueryBenchmark
+ * 회원/팀 수는 JMH 파라미터(-p memberCount=100000)로 바꿀 수 있다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QueryBenchmark {
+
+    @Param({"1000", "10000"})
+    int memberCount;
+
+    @Param({"10"})
+    int teamCount;
+
+    BenchmarkEnvironment env;
+    JPAQueryFactory queryFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = BenchmarkEnvironment.start(memberCount, teamCount);
+        queryFactory = env.queryFactory;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    @Benchmark
+    public List<Member> selectFromMember() {
+        return env.tx.execute(status -> queryFactory.selectFrom(member).fetch());
+    }
+
+    /*페치 조인 미적용: 지연 로딩으로 팀 조회*/
+    @Benchmark
+    public void lazyTeam(Blackhole bh) {
+        env.tx.executeWithoutResult(status -> {
+            for (Member m : queryFactory.selectFrom(member).fetch()) {
+                bh.consume(m.getTeam().getName());
+            }
+        });
+    }
+
+    @Benchmark
+    public void fetchJoinTeam(Blackhole bh) {
+        env.tx.executeWithoutResult(status -> {
+            for (Member m : queryFactory.selectFrom(member).join(member.team, team).fetchJoin().fetch()) {
+                bh.consume(m.getTeam().getName());
+            }
+        });
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionBean() {
+        return env.tx.execute(status -> queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionFields() {
+        return env.tx.execute(status -> queryFactory
+                .select(Projections.fields(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionConstructor() {
+        return env.tx.execute(status -> queryFactory
+                .select(Projections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> queryProjection() {
+        return env.tx.execute(status -> queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> lambdaProjection() {
+        return env.tx.execute(status -> queryFactory
+                .select(DtoProjections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    /*나이가 평균 나이 이상인 회원*/
+    @Benchmark
+    public List<Member> subQueryGoe() {
+        QMember memberSub = new QMember("memberSub");
+        return env.tx.execute(status -> queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(
+                        JPAExpressions
+                                .select(memberSub.age.avg())
+                                .from(memberSub)))
+                .fetch());
+    }
+
+    /*데이터가 바뀌지 않도록 롤백*/
+    @Benchmark
+    public long bulkUpdate() {
+        return env.tx.execute(status -> {
+            status.setRollbackOnly();
+            return queryFactory
+                    .update(member)
+                    .set(member.age, member.age.add(1))
+                    .where(member.age.lt(28))
+                    .execute();
+        });
+    }
+
+}
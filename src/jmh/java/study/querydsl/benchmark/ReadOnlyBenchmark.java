@@ -0,0 +1,100 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.ReadOnlyQueries;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 일반 트랜잭션과 읽기 전용 모드(ReadOnlyQueries)의 엔티티 조회 비용
+ *
+ * ./gradlew jmh -PjmhIncludes=ReadOnlyBenchmark
+ * gc.alloc.rate.norm 으로 스냅샷/엔티티 엔트리 할당량 차이를, 처리량으로 커밋 시 변경 감지 비용 차이를 본다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReadOnlyBenchmark {
+
+    @Param({"10000"})
+    int memberCount;
+
+    BenchmarkEnvironment env;
+    JPAQueryFactory queryFactory;
+    ReadOnlyQueries readOnlyQueries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = BenchmarkEnvironment.start(memberCount, 10);
+        queryFactory = env.queryFactory;
+        readOnlyQueries = env.getBean(ReadOnlyQueries.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    /*엔티티마다 스냅샷을 만들고 커밋 시 전부 변경 감지*/
+    @Benchmark
+    public List<Member> readWriteTx() {
+        return env.tx.execute(status -> queryFactory.selectFrom(member).fetch());
+    }
+
+    @Benchmark
+    public List<Member> readOnlyHint() {
+        return env.tx.execute(status -> ReadOnlyQueries.readOnly(queryFactory.selectFrom(member)).fetch());
+    }
+
+    @Benchmark
+    public List<Member> readOnlyTx() {
+        return readOnlyQueries.read(queryFactory -> queryFactory.selectFrom(member).fetch());
+    }
+
+    @Benchmark
+    public List<Member> statelessSession() {
+        return readOnlyQueries.stateless(session -> new HibernateQuery<Void>(session)
+                .select(member)
+                .from(member)
+                .fetch());
+    }
+
+    /*group: 엔티티가 없는 집계는 모드와 관계없이 비슷해야 한다*/
+    @Benchmark
+    public List<Tuple> groupReadWriteTx() {
+        return env.tx.execute(status -> queryFactory
+                .select(team.name, member.age.avg())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<Tuple> groupReadOnlyTx() {
+        return readOnlyQueries.read(queryFactory -> queryFactory
+                .select(team.name, member.age.avg())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .fetch());
+    }
+
+}
@@ -0,0 +1,98 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * SQL 로그 방식별 처리량 (PK 조회 100번 = 1 op)
+ *
+ * none:      p6spy 미사용 (기준)
+ * p6spyOnly: p6spy 프록시만 사용하고 기록하지 않음 (프록시 자체 비용)
+ * logAll:    이전 설정처럼 p6spy 가 모든 문장을 파라미터와 함께 기록
+ * sampled:   SampledStatementTracer 로 1% 표본 + 100ms 이상만 기록
+ *
+ * 로그는 콘솔 대신 임시 디렉터리의 파일로 쓴다.
+ * ./gradlew jmh -PjmhIncludes=SqlTraceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SqlTraceBenchmark {
+
+    @Param({"none", "p6spyOnly", "logAll", "sampled"})
+    String mode;
+
+    BenchmarkEnvironment env;
+    JPAQueryFactory queryFactory;
+    long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String logFile = new File(System.getProperty("java.io.tmpdir"), "sql-trace-benchmark.log").getPath();
+        String[] logToFile = {"--logging.file.name=" + logFile, "--logging.pattern.console="};
+
+        if ("logAll".equals(mode)) {
+            env = BenchmarkEnvironment.start(1000, 10, concat(logToFile,
+                    "--decorator.datasource.enabled=true",
+                    "--decorator.datasource.p6spy.enable-logging=true",
+                    "--logging.level.p6spy=info",
+                    "--monitor.sql-trace.enabled=false"));
+        } else if ("p6spyOnly".equals(mode)) {
+            env = BenchmarkEnvironment.start(1000, 10, concat(logToFile,
+                    "--decorator.datasource.enabled=true",
+                    "--monitor.sql-trace.enabled=false"));
+        } else if ("sampled".equals(mode)) {
+            env = BenchmarkEnvironment.start(1000, 10, concat(logToFile,
+                    "--decorator.datasource.enabled=true",
+                    "--logging.level.study.querydsl.sql=info",
+                    "--monitor.sql-trace.enabled=true",
+                    "--monitor.sql-trace.sample-rate=0.01",
+                    "--monitor.sql-trace.slow-threshold=100ms"));
+        } else {
+            env = BenchmarkEnvironment.start(1000, 10);
+        }
+        queryFactory = env.queryFactory;
+        firstId = env.tx.execute(status -> queryFactory.select(member.id.min()).from(member).fetchOne());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.close();
+    }
+
+    @Benchmark
+    public void shortQueries(Blackhole bh) {
+        env.tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 100; i++) {
+                bh.consume(queryFactory
+                        .select(member.username)
+                        .from(member)
+                        .where(member.id.eq(firstId + i))
+                        .fetchOne());
+            }
+        });
+    }
+
+    private static String[] concat(String[] first, String... second) {
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+}
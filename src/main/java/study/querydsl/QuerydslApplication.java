@@ -1,13 +1,28 @@
 package study.querydsl;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import study.querydsl.cache.InvalidatingJPAQueryFactory;
+import study.querydsl.cache.QueryResultCache;
+
+import javax.persistence.EntityManager;
 
 @SpringBootApplication
+@EnableScheduling
 public class QuerydslApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(QuerydslApplication.class, args);
 	}
 
+	/*EntityManager는 트랜잭션 단위로 바인딩되는 프록시라 싱글톤으로 공유해도 된다.
+	update/delete 벌크 연산은 QueryResultCache 의 해당 엔티티 결과를 무효화한다.*/
+	@Bean
+	JPAQueryFactory jpaQueryFactory(EntityManager em, QueryResultCache queryResultCache) {
+		return new InvalidatingJPAQueryFactory(em, queryResultCache);
+	}
+
 }
@@ -0,0 +1,54 @@
+package study.querydsl.cache;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import javax.persistence.EntityManager;
+
+/**
+ * update/delete 벌크 연산을 실행하면 대상 엔티티 타입의 QueryResultCache 결과를 무효화하는 JPAQueryFactory
+ *
+ * 벌크 연산은 엔티티 이벤트가 발생하지 않으므로 QueryResultCacheInvalidator 가 알 수 없다.
+ */
+public class InvalidatingJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final QueryResultCache queryResultCache;
+
+    public InvalidatingJPAQueryFactory(EntityManager em, QueryResultCache queryResultCache) {
+        super(em);
+        this.em = em;
+        this.queryResultCache = queryResultCache;
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return new JPAUpdateClause(em, path) {
+            @Override
+            public long execute() {
+                long affected = super.execute();
+                if (affected > 0) {
+                    queryResultCache.invalidate(path.getType());
+                }
+                return affected;
+            }
+        };
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return new JPADeleteClause(em, path) {
+            @Override
+            public long execute() {
+                long affected = super.execute();
+                if (affected > 0) {
+                    queryResultCache.invalidate(path.getType());
+                }
+                return affected;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,262 @@
+package study.querydsl.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Querydsl 조회 결과 캐시
+ *
+ * 키는 쿼리를 직렬화한 JPQL + 파라미터 값 + 페이징 + 쿼리가 참조하는 엔티티 타입별 세대(generation) 번호다.
+ * 엔티티가 바뀌어 커밋되면 그 타입의 세대만 올라가므로, 그 타입을 참조하는 결과만 더 이상 조회되지 않고
+ * (크기/TTL 로 밀려날 때까지 남아 있다) 다른 타입만 참조하는 결과는 그대로 쓴다.
+ * 세대는 쿼리를 실행하기 전에 읽으므로 실행 중에 커밋된 변경이 있으면 그 결과는 다음 조회에서 쓰이지 않는다.
+ *
+ * 변경은 엔티티 이벤트(QueryResultCacheInvalidator)와 JPAQueryFactory 의 update/delete(InvalidatingJPAQueryFactory)로 알려진다.
+ * em.createQuery 로 직접 실행한 벌크 JPQL 이나 네이티브 SQL 은 알 수 없으므로 ttl 이 지나야 반영된다.
+ *
+ * 현재 트랜잭션이 쿼리가 참조하는 타입을 이미 바꿨다면 커밋 전 데이터이므로 캐시를 읽지도 쓰지도 않는다.
+ * 제거 정책은 Caffeine 기본(W-TinyLFU)이고, 적중률/제거 수는 cache.* 메트릭(cache=querydsl.result)으로 나간다.
+ */
+@Slf4j
+@Component
+public class QueryResultCache {
+
+    static final String CACHE_NAME = "querydsl.result";
+
+    private final EntityManager em;
+    private final Set<Class<?>> entityTypes = new HashSet<>();
+    private final Cache<String, Object> cache;
+    private final ConcurrentMap<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public QueryResultCache(EntityManager em, EntityManagerFactory emf, MeterRegistry registry,
+                            @Value("${query.result-cache.ttl:10s}") Duration ttl,
+                            @Value("${query.result-cache.maximum-size:10000}") long maximumSize) {
+        this.em = em;
+        for (EntityType<?> entity : emf.getMetamodel().getEntities()) {
+            entityTypes.add(entity.getJavaType());
+        }
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    /**
+     * 결과 목록은 여러 요청이 공유하므로 엔티티가 아니라 DTO/값을 조회하는 쿼리에만 사용한다.
+     */
+    public <T> List<T> fetch(JPAQuery<T> query) {
+        return get(query, Pageable.unpaged(), () -> Collections.unmodifiableList(query.fetch()));
+    }
+
+    /**
+     * @param query  키를 만들 쿼리, loader 가 offset/limit 을 붙이기 전 상태여야 한다.
+     * @param loader 캐시에 없을 때 실행, 결과는 여러 요청이 공유하므로 변경할 수 없는 값이어야 한다.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(JPAQuery<?> query, Pageable pageable, Supplier<T> loader) {
+        Set<Class<?>> types = referencedTypes(query.getMetadata());
+        if (modifiedInCurrentTransaction(types)) {
+            return loader.get();
+        }
+
+        String key = key(query.getMetadata(), pageable, types);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        T value = loader.get();
+        //실행하면서 자동 flush 로 현재 트랜잭션의 변경이 나갔으면 커밋 전 결과이므로 담지 않는다.
+        if (value != null && !modifiedInCurrentTransaction(types)) {
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 트랜잭션 안이면 커밋된 뒤에, 아니면 바로 type 의 세대를 올린다.
+     */
+    public void invalidate(Class<?> type) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(type);
+            return;
+        }
+        PendingInvalidation pending = pendingInvalidation();
+        if (pending == null) {
+            pending = new PendingInvalidation();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.types.add(type);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private void bump(Class<?> type) {
+        generations.computeIfAbsent(type, k -> new AtomicLong()).incrementAndGet();
+        log.debug("query result cache invalidated: {}", type.getSimpleName());
+    }
+
+    private long generation(Class<?> type) {
+        AtomicLong generation = generations.get(type);
+        return generation == null ? 0 : generation.get();
+    }
+
+    private boolean modifiedInCurrentTransaction(Set<Class<?>> types) {
+        PendingInvalidation pending = pendingInvalidation();
+        return pending != null && !Collections.disjoint(pending.types, types);
+    }
+
+    /*REQUIRES_NEW 로 중단된 바깥 트랜잭션의 동기화는 보이지 않으므로 트랜잭션마다 따로 모인다.*/
+    private PendingInvalidation pendingInvalidation() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingInvalidation && ((PendingInvalidation) synchronization).owner() == this) {
+                return (PendingInvalidation) synchronization;
+            }
+        }
+        return null;
+    }
+
+    private String key(QueryMetadata metadata, Pageable pageable, Set<Class<?>> types) {
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(metadata, false, null);
+
+        //라벨(?1, ?2 ...) 순서로 값을 붙인다.
+        Map<String, Object> values = new TreeMap<>(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+        for (Map.Entry<Object, String> constant : serializer.getConstantToAllLabels().entrySet()) {
+            values.put(constant.getValue(), constant.getKey());
+        }
+        StringBuilder key = new StringBuilder(serializer.toString()).append(" #").append(values);
+        for (Map.Entry<ParamExpression<?>, Object> param : metadata.getParams().entrySet()) {
+            key.append(' ').append(param.getKey().getName()).append('=').append(param.getValue());
+        }
+        key.append(" #").append(metadata.getModifiers());
+        if (pageable.isPaged()) {
+            key.append(" #").append(pageable.getOffset()).append(',').append(pageable.getPageSize());
+        }
+        types.stream()
+                .sorted(Comparator.comparing(Class::getName))
+                .forEach(type -> key.append(" #").append(type.getSimpleName()).append('=').append(generation(type)));
+        return key.toString();
+    }
+
+    /**
+     * select/from/join/where/group by/having/order by 에 나오는 경로 중 엔티티 타입 (member.team.name 같은 암시적 조인 포함)
+     */
+    Set<Class<?>> referencedTypes(QueryMetadata metadata) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        collect(metadata, types);
+        return types;
+    }
+
+    private void collect(QueryMetadata metadata, Set<Class<?>> types) {
+        collect(metadata.getProjection(), types);
+        for (JoinExpression join : metadata.getJoins()) {
+            collect(join.getTarget(), types);
+            collect(join.getCondition(), types);
+        }
+        collect(metadata.getWhere(), types);
+        for (Expression<?> groupBy : metadata.getGroupBy()) {
+            collect(groupBy, types);
+        }
+        collect(metadata.getHaving(), types);
+        for (OrderSpecifier<?> order : metadata.getOrderBy()) {
+            collect(order.getTarget(), types);
+        }
+    }
+
+    private void collect(Expression<?> expression, Set<Class<?>> types) {
+        if (expression == null) {
+            return;
+        }
+        if (expression instanceof Path) {
+            for (Path<?> path = (Path<?>) expression; path != null; path = path.getMetadata().getParent()) {
+                if (entityTypes.contains(path.getType())) {
+                    types.add(path.getType());
+                }
+            }
+        } else if (expression instanceof Operation) {
+            ((Operation<?>) expression).getArgs().forEach(arg -> collect(arg, types));
+        } else if (expression instanceof FactoryExpression) {
+            ((FactoryExpression<?>) expression).getArgs().forEach(arg -> collect(arg, types));
+        } else if (expression instanceof SubQueryExpression) {
+            collect(((SubQueryExpression<?>) expression).getMetadata(), types);
+        } else if (expression instanceof TemplateExpression) {
+            for (Object arg : ((TemplateExpression<?>) expression).getArgs()) {
+                if (arg instanceof Expression) {
+                    collect((Expression<?>) arg, types);
+                }
+            }
+        }
+    }
+
+    /**
+     * 한 트랜잭션에서 바뀐 엔티티 타입, 커밋되면 세대를 올리고 롤백되면 버린다.
+     */
+    private class PendingInvalidation implements TransactionSynchronization {
+
+        private final Set<Class<?>> types = new HashSet<>();
+
+        QueryResultCache owner() {
+            return QueryResultCache.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            types.forEach(QueryResultCache.this::bump);
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 운영 프로파일(application-prod.yml)에서 켜는 커넥션 풀 설정
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.pool", name = "size-from-cores", havingValue = "true")
+public class DataSourceTuningConfig {
+
+    /*BeanPostProcessor 는 다른 빈보다 먼저 만들어져야 하므로 static*/
+    @Bean
+    static HikariPoolSizer hikariPoolSizer(@Value("${datasource.pool.spindle-count:1}") int spindleCount) {
+        return new HikariPoolSizer(Runtime.getRuntime().availableProcessors(), spindleCount);
+    }
+
+}
@@ -0,0 +1,43 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * MVC 비동기 응답(StreamingResponseBody, Callable)을 실행하는 전용 스레드 풀
+ *
+ * 기본값이면 내보내기(/members/export)가 검색 요청과 같은 applicationTaskExecutor 를 쓰므로,
+ * 수 분씩 걸리는 내보내기 몇 건이 스레드를 모두 잡고 있으면 검색이 밀린다.
+ * 동시 실행 수와 대기열을 따로 제한하고, 넘치면 TaskRejectedException (컨트롤러에서 503)으로 거절한다.
+ *
+ * 풀을 빈으로 등록하면 Executor 빈이 있다고 보고 스프링 부트가 applicationTaskExecutor 를 만들지 않으므로 여기서 직접 관리한다.
+ */
+@Configuration
+public class ExportAsyncConfig implements WebMvcConfigurer, DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    public ExportAsyncConfig(@Value("${export.max-concurrency:2}") int maxConcurrency,
+                             @Value("${export.queue-capacity:4}") int queueCapacity) {
+        executor.setCorePoolSize(maxConcurrency);
+        executor.setMaxPoolSize(maxConcurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("export-");
+        executor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+}
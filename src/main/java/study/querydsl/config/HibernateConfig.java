@@ -0,0 +1,20 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.monitor.CountingStatementInspector;
+import study.querydsl.monitor.StatementCounter;
+
+@Configuration
+public class HibernateConfig {
+
+    /*Hibernate가 생성한 인스턴스가 아니라 스프링 빈과 연결된 StatementInspector를 등록*/
+    @Bean
+    HibernatePropertiesCustomizer statementInspectorCustomizer(StatementCounter statementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new CountingStatementInspector(statementCounter));
+    }
+
+}
@@ -0,0 +1,22 @@
+package study.querydsl.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 읽기 전용 트랜잭션이면 복제본, 아니면 원본으로 커넥션을 얻는다.
+ *
+ * 트랜잭션 시작 시점에는 아직 readOnly 여부가 동기화되지 않으므로 LazyConnectionDataSourceProxy 로 감싸서
+ * 첫 SQL 을 실행할 때 커넥션을 고르게 해야 한다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? REPLICA : PRIMARY;
+    }
+
+}
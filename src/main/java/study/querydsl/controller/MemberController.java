@@ -0,0 +1,119 @@
+package study.querydsl.controller;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.monitor.QueryMetrics;
+import study.querydsl.repository.CachedMemberSearch;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.ReadOnlyQueries;
+import study.querydsl.repository.UnsupportedSortException;
+import study.querydsl.service.MemberExportService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * JPA 조회는 블로킹이므로 요청 스레드(서블릿 스레드)에서 실행하지 않고
+ * applicationTaskExecutor(spring.task.execution.*)에서 실행한 뒤 비동기 응답으로 돌려준다.
+ * @EnableScheduling 의 taskScheduler 도 TaskExecutor 이므로 이름으로 지정한다.
+ * 내보내기는 오래 걸리므로 검색과 풀을 나눠서 ExportAsyncConfig 의 풀에서 실행한다.
+ */
+@RestController
+public class MemberController {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final CachedMemberSearch cachedMemberSearch;
+    private final MemberRepository memberRepository;
+    private final ReadOnlyQueries readOnlyQueries;
+    private final MemberExportService memberExportService;
+    private final QueryMetrics queryMetrics;
+    private final TaskExecutor taskExecutor;
+
+    public MemberController(CachedMemberSearch cachedMemberSearch, MemberRepository memberRepository,
+                            ReadOnlyQueries readOnlyQueries, MemberExportService memberExportService,
+                            QueryMetrics queryMetrics,
+                            @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+        this.cachedMemberSearch = cachedMemberSearch;
+        this.memberRepository = memberRepository;
+        this.readOnlyQueries = readOnlyQueries;
+        this.memberExportService = memberExportService;
+        this.queryMetrics = queryMetrics;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @GetMapping("/members")
+    public CompletableFuture<List<MemberDto>> search(@RequestParam(required = false) String username,
+                                                     @RequestParam(required = false) Integer age) {
+        return CompletableFuture.supplyAsync(() -> readOnlyQueries.read(queryFactory ->
+                queryMetrics.record("member.search", () -> cachedMemberSearch.search(username, age)).stream()
+                        .map(m -> new MemberDto(m.getUsername(), m.getAge()))
+                        .collect(Collectors.toList())), taskExecutor);
+    }
+
+    /**
+     * 조건 검색 페이지, 정렬은 ?sort=username,desc 처럼 username/age/teamName/memberId 로 지정한다.
+     */
+    @GetMapping("/members/search")
+    public CompletableFuture<Page<MemberTeamDto>> searchPage(MemberSearchCondition condition,
+                                                             @PageableDefault(size = 20) Pageable pageable) {
+        return CompletableFuture.supplyAsync(() -> queryMetrics.record("member.searchPage",
+                () -> memberRepository.searchPage(condition, pageable)), taskExecutor);
+    }
+
+    /**
+     * 조건 검색 슬라이스, 전체 건수가 필요 없는 무한 스크롤용 (카운트 쿼리 없음)
+     */
+    @GetMapping("/members/slice")
+    public CompletableFuture<Slice<MemberTeamDto>> searchSlice(MemberSearchCondition condition,
+                                                               @PageableDefault(size = 20) Pageable pageable) {
+        return CompletableFuture.supplyAsync(() -> queryMetrics.record("member.searchSlice",
+                () -> memberRepository.searchSlice(condition, pageable)), taskExecutor);
+    }
+
+    /**
+     * 회원 전체 내보내기, 응답 본문은 MVC 비동기 스레드(ExportAsyncConfig)에서 DB 커서를 읽으면서 바로 쓴다.
+     */
+    @GetMapping("/members/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = memberExportService::writeNdjson;
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * 내보내기 동시 실행 수와 대기열이 모두 찼으면 나중에 다시 요청하도록 503
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> exportRejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    /**
+     * 정렬할 수 없는 속성(?sort=foo)은 클라이언트 오류이므로 400
+     * 리포지토리 예외 변환(InvalidDataAccessApiUsageException)으로 감싸져 와도 원인 예외로 찾는다.
+     */
+    @ExceptionHandler(UnsupportedSortException.class)
+    public ResponseEntity<String> unsupportedSort(UnsupportedSortException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+}
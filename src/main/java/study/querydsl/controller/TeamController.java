@@ -0,0 +1,41 @@
+package study.querydsl.controller;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamDto;
+import study.querydsl.monitor.QueryMetrics;
+import study.querydsl.repository.ReadOnlyQueries;
+import study.querydsl.repository.TeamQueryRepository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@RestController
+public class TeamController {
+
+    private final TeamQueryRepository teamQueryRepository;
+    private final ReadOnlyQueries readOnlyQueries;
+    private final QueryMetrics queryMetrics;
+    private final TaskExecutor taskExecutor;
+
+    public TeamController(TeamQueryRepository teamQueryRepository, ReadOnlyQueries readOnlyQueries,
+                          QueryMetrics queryMetrics,
+                          @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+        this.teamQueryRepository = teamQueryRepository;
+        this.readOnlyQueries = readOnlyQueries;
+        this.queryMetrics = queryMetrics;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @GetMapping("/teams")
+    public CompletableFuture<List<TeamDto>> teams() {
+        return CompletableFuture.supplyAsync(() -> readOnlyQueries.read(queryFactory ->
+                queryMetrics.record("team.list", teamQueryRepository::findAll).stream()
+                        .map(t -> new TeamDto(t.getId(), t.getName()))
+                        .collect(Collectors.toList())), taskExecutor);
+    }
+
+}
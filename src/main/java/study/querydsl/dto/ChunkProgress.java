@@ -0,0 +1,39 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 청크 단위 대량 작업 진행 상황
+ */
+@Getter
+@ToString
+public class ChunkProgress {
+
+    private final String jobName;
+    private final int chunks;
+    /*재시작 전에 처리한 건수를 포함한 누적 건수*/
+    private final long processedCount;
+    /*이번 실행에서 처리한 건수, 초당 처리 건수의 기준*/
+    private final long runProcessedCount;
+    private final long position;
+    private final long elapsedMillis;
+    private final boolean completed;
+
+    public ChunkProgress(String jobName, int chunks, long processedCount, long runProcessedCount, long position,
+                         long elapsedMillis, boolean completed) {
+        this.jobName = jobName;
+        this.chunks = chunks;
+        this.processedCount = processedCount;
+        this.runProcessedCount = runProcessedCount;
+        this.position = position;
+        this.elapsedMillis = elapsedMillis;
+        this.completed = completed;
+    }
+
+    /*이번 실행의 초당 처리 건수, 재시작 전에 처리한 건수는 포함하지 않는다*/
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? runProcessedCount : runProcessedCount * 1000d / elapsedMillis;
+    }
+
+}
@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@ToString
+public class DashboardDto {
+
+    private final long memberCount;
+    private final List<TeamAgeDto> teamAges;
+    /*평균 나이보다 나이가 많은 회원 수*/
+    private final long olderThanAverageCount;
+
+    public DashboardDto(long memberCount, List<TeamAgeDto> teamAges, long olderThanAverageCount) {
+        this.memberCount = memberCount;
+        this.teamAges = teamAges;
+        this.olderThanAverageCount = olderThanAverageCount;
+    }
+
+}
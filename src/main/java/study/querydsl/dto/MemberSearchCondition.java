@@ -0,0 +1,14 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/*회원 검색 조건, null 인 항목은 조건에서 빠진다.*/
+@Data
+public class MemberSearchCondition {
+
+    private String username;
+    private String teamName;
+    private Integer ageGoe;
+    private Integer ageLoe;
+
+}
@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 회원 일괄 변경 요청 한 건, null 인 값은 변경하지 않는다.
+ */
+@Getter
+@ToString
+public class MemberUpdateDto {
+
+    private final Long id;
+    private final String username;
+    private final Integer age;
+
+    public MemberUpdateDto(Long id, String username, Integer age) {
+        this.id = id;
+        this.username = username;
+        this.age = age;
+    }
+
+}
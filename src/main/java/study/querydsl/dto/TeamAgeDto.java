@@ -0,0 +1,19 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/*팀 이름과 평균 연령*/
+@Getter
+@ToString
+public class TeamAgeDto {
+
+    private final String teamName;
+    private final Double averageAge;
+
+    public TeamAgeDto(String teamName, Double averageAge) {
+        this.teamName = teamName;
+        this.averageAge = averageAge;
+    }
+
+}
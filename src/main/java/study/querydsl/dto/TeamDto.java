@@ -0,0 +1,18 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class TeamDto {
+
+    private final Long id;
+    private final String name;
+
+    public TeamDto(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+}
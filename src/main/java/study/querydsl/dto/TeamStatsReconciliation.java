@@ -0,0 +1,30 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * team_stats 와 실제 회원 집계 비교 결과
+ */
+@Getter
+@ToString
+public class TeamStatsReconciliation {
+
+    private final int checkedTeams;
+    /*값이 다르거나, 집계 행이 없거나, 팀이 없어진 집계 행의 팀 ID*/
+    private final List<Long> mismatchedTeamIds;
+    private final boolean repaired;
+
+    public TeamStatsReconciliation(int checkedTeams, List<Long> mismatchedTeamIds, boolean repaired) {
+        this.checkedTeams = checkedTeams;
+        this.mismatchedTeamIds = mismatchedTeamIds;
+        this.repaired = repaired;
+    }
+
+    public boolean isConsistent() {
+        return mismatchedTeamIds.isEmpty();
+    }
+
+}
@@ -0,0 +1,89 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+
+/**
+ * 청크 단위 대량 작업의 진행 위치
+ *
+ * 청크를 처리한 트랜잭션 안에서 함께 저장되므로, 중간에 프로세스가 죽어도
+ * 마지막으로 커밋된 청크 다음부터 다시 시작할 수 있다.
+ *
+ * position 은 작업마다 의미가 다르므로(삭제는 회원 ID, 적재는 파일 위치) 작업 종류와 대상(조건, 파일)으로 만든
+ * signature 를 함께 저장하고, 이어서 실행할 때 같은 작업인지 확인한다.
+ */
+@Entity
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class BulkJobCheckpoint {
+
+    @Id
+    private String jobName;
+
+    /*마지막으로 처리한 ID (또는 위치)*/
+    private long position;
+
+    private long processedCount;
+
+    /*작업 종류 + 대상의 해시, signature(...) 로 만든다*/
+    private String signature;
+
+    private LocalDateTime updatedAt;
+
+    public BulkJobCheckpoint(String jobName, String signature) {
+        this.jobName = jobName;
+        this.signature = signature;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * @param type  작업 종류 (member-delete, member-import ...)
+     * @param parts 작업 대상을 구분하는 값 (조건, 파일 경로 ...)
+     * @return type:대상 해시
+     */
+    public static String signature(String type, Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (Object part : parts) {
+            raw.append(part).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(type).append(':');
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 같은 jobName 으로 다른 작업(종류나 조건, 파일이 다른)을 이어서 실행하면 엉뚱한 위치부터 처리하게 되므로 막는다.
+     *
+     * @throws IllegalStateException 다른 작업이 남긴 체크포인트
+     */
+    public void verify(String expectedSignature) {
+        if (!expectedSignature.equals(signature)) {
+            throw new IllegalStateException("checkpoint of job '" + jobName + "' belongs to another job ("
+                    + signature + ", expected " + expectedSignature + "), use another job name or delete the checkpoint");
+        }
+    }
+
+    public void advance(long position, long processed) {
+        this.position = position;
+        this.processedCount += processed;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+}
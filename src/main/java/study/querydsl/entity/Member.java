@@ -1,6 +1,7 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
 
@@ -9,10 +10,23 @@ import javax.persistence.*;
 @Entity
 @ToString(of={"id", "username", "age"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED) //JPA 스팩상 PROTECTED로 열어두어야 함
+@Table(indexes = {
+        /*username 검색(단독, age 와 함께), MemberDto(username, age) 프로젝션은 테이블을 읽지 않고 인덱스만으로 처리*/
+        @Index(name = "idx_member_username_age", columnList = "username, age"),
+        /*age 검색/정렬, 키셋 페이징 정렬 키 (age, username, id)*/
+        @Index(name = "idx_member_age_username_id", columnList = "age, username, member_id"),
+        /*username desc 정렬 페이징, 역순으로 인덱스를 읽지 못하는 DB(H2)를 위해 내림차순으로 만든다.*/
+        @Index(name = "idx_member_username_desc", columnList = "username desc"),
+        /*팀 조인, FK 에 인덱스를 자동으로 만들지 않는 DB(PostgreSQL 등)를 위해 명시*/
+        @Index(name = "idx_member_team_id", columnList = "team_id")
+})
 public class Member {
 
+    /*IDENTITY 전략은 persist 시점에 INSERT가 바로 실행되어 JDBC 배치가 동작하지 않는다.
+    시퀀스 + pooled 최적화로 allocationSize 만큼 ID를 미리 할당받아 배치 INSERT가 가능하도록 한다.*/
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
 
@@ -24,6 +38,11 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    /*동시에 같은 회원을 고치면 나중에 커밋하는 쪽이 OptimisticLockException, OptimisticRetryExecutor 로 다시 실행한다.*/
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
     public Member(String username) {
         this(username, 0);
     }
@@ -39,9 +58,25 @@ public class Member {
         }
     }
 
+    /**
+     * 이전 팀 컬렉션에서 빼고 새 팀 컬렉션에 넣는다.
+     * 초기화되지 않은 Team.members 는 건드리지 않는다. EXTRA 컬렉션의 add/remove 는 회원마다 존재 확인 SELECT 와
+     * (대기 중인 변경이 있으면) flush 를 일으켜서 여러 회원을 옮기거나 넣을 때 배치가 깨진다.
+     * 그래서 메모리의 양쪽이 맞춰지는 것은 이미 초기화된 컬렉션뿐이다. 컬렉션 초기화는 자동 flush 를 하지 않으므로,
+     * 같은 영속성 컨텍스트에서 flush 전에 팀 컬렉션을 처음 읽으면 이 변경이 빠진 DB 상태가 보인다.
+     * 옮긴 뒤 같은 트랜잭션에서 팀 컬렉션을 읽어야 하면 먼저 em.flush() 한다.
+     */
     public void changeTeam(Team team) {
+        if (this.team == team) {
+            return;
+        }
+        if (this.team != null && Hibernate.isInitialized(this.team.getMembers())) {
+            this.team.getMembers().remove(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        if (team != null && Hibernate.isInitialized(team.getMembers())) {
+            team.getMembers().add(this);
+        }
     }
 
 }
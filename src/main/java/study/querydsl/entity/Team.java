@@ -1,16 +1,24 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
+import org.hibernate.annotations.OptimisticLock;
 
 import javax.persistence.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 @Entity
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
 public class Team {
 
     @Id
@@ -20,8 +28,19 @@ public class Team {
 
     private String name;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
+    /*회원이 들어오고 나가는 것은 Member 버전으로 충돌을 잡으므로 팀 버전은 올리지 않는다.
+    EXTRA: size/contains 는 컬렉션 전체를 읽지 않고 count/존재 확인 쿼리로 처리한다.
+    Member.changeTeam 은 초기화된 컬렉션만 고친다. (add/remove 도 회원마다 존재 확인 쿼리가 나가므로)
+    flush 전에 처음 초기화하면 그 사이 옮긴 회원은 빠져 있다.
+    컬렉션은 2차 캐시에 두지 않는다. Member 가 캐시 대상이 아니라서 캐시에는 ID 만 남고 회원은 어차피 DB 에서 다시 읽는다.*/
+    @OptimisticLock(excluded = true)
+    @LazyCollection(LazyCollectionOption.EXTRA)
     @OneToMany(mappedBy = "team")
-    List<Member> members = new ArrayList<>();
+    Set<Member> members = new HashSet<>();
 
     public Team(String name) {
         this.name = name;
@@ -0,0 +1,43 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 팀별 회원 집계 (team_stats)
+ *
+ * 회원 저장/변경/삭제 시 TeamStatsEventListener 가 증감분을 네이티브 SQL 로 반영하고,
+ * 벌크 연산 뒤에는 TeamStatsService.recompute 로 다시 계산한다. 엔티티로는 읽기만 한다.
+ */
+@Entity
+@Immutable
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class TeamStats {
+
+    @Id
+    private Long teamId;
+
+    private long memberCount;
+
+    private long ageSum;
+
+    private Integer minAge;
+
+    private Integer maxAge;
+
+    /*회원이 빠진 뒤라 min/max 가 실제보다 넓을 수 있음, TeamStatsService 가 조회할 때 다시 계산*/
+    private boolean rangeStale;
+
+    public Double getAverageAge() {
+        return memberCount == 0 ? null : (double) ageSum / memberCount;
+    }
+
+}
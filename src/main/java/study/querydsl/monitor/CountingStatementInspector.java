@@ -0,0 +1,24 @@
+package study.querydsl.monitor;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate 가 JDBC 로 보내는 모든 SQL 을 StatementCounter 에 기록한다.
+ */
+public class CountingStatementInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final StatementCounter counter;
+
+    public CountingStatementInspector(StatementCounter counter) {
+        this.counter = counter;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        counter.record(sql);
+        return sql;
+    }
+
+}
@@ -0,0 +1,124 @@
+package study.querydsl.monitor;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 논리적인 쿼리 이름별 지연 시간/조회 건수/SQL 실행 수 메트릭
+ *
+ * querydsl.query            지연 시간 (히스토그램, /actuator/metrics/querydsl.query?tag=query:member.search)
+ * querydsl.query.rows       결과 건수 (컬렉션이면 크기, Page/Slice 면 그 페이지의 건수, 단건이면 0 또는 1)
+ * querydsl.query.statements 실행된 SQL 수 (지연 로딩으로 추가된 SQL 포함)
+ * querydsl.query.errors     예외 수
+ *
+ * 미터는 이름별로 한 번만 만들어서 재사용하므로 호출당 비용은 nanoTime 두 번과 StatementScope 하나다.
+ * 스코프는 문장 수만 세고 SQL 을 정규화하지 않는다. (N+1 검사는 요청 스코프 StatementCountFilter 가 한다)
+ * 지연 시간이 monitor.query.slow-threshold 를 넘으면 경고 로그를 남긴다.
+ * 쿼리 이름은 태그로 들어가므로 조건 값 같은 가변 문자열을 쓰면 안 된다.
+ */
+@Slf4j
+@Component
+public class QueryMetrics {
+
+    private final MeterRegistry registry;
+    private final StatementCounter statementCounter;
+    private final long slowThresholdNanos;
+    private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry registry, StatementCounter statementCounter,
+                        @Value("${monitor.query.slow-threshold:200ms}") Duration slowThreshold) {
+        this.registry = registry;
+        this.statementCounter = statementCounter;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    public <T> List<T> fetch(String name, JPAQuery<T> query) {
+        return record(name, query::fetch);
+    }
+
+    public <T> T fetchOne(String name, JPAQuery<T> query) {
+        return record(name, query::fetchOne);
+    }
+
+    public <T> T record(String name, Supplier<T> query) {
+        Meters m = meters.computeIfAbsent(name, this::register);
+        long start = System.nanoTime();
+        try (StatementScope scope = statementCounter.openCounting(name)) {
+            T result = query.get();
+            long elapsed = System.nanoTime() - start;
+            long rows = rowCount(result);
+            int statements = scope.getStatementCount();
+
+            m.latency.record(elapsed, TimeUnit.NANOSECONDS);
+            m.rows.record(rows);
+            m.statements.record(statements);
+            if (elapsed > slowThresholdNanos) {
+                log.warn("[{}] slow query: {} ms, {} rows, {} statements", name,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed), rows, statements);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            m.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            m.errors.increment();
+            throw e;
+        }
+    }
+
+    private static long rowCount(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        return result == null ? 0 : 1;
+    }
+
+    private Meters register(String name) {
+        return new Meters(
+                Timer.builder("querydsl.query")
+                        .tag("query", name)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                DistributionSummary.builder("querydsl.query.rows")
+                        .tag("query", name)
+                        .register(registry),
+                DistributionSummary.builder("querydsl.query.statements")
+                        .tag("query", name)
+                        .register(registry),
+                Counter.builder("querydsl.query.errors")
+                        .tag("query", name)
+                        .register(registry));
+    }
+
+    private static class Meters {
+
+        private final Timer latency;
+        private final DistributionSummary rows;
+        private final DistributionSummary statements;
+        private final Counter errors;
+
+        Meters(Timer latency, DistributionSummary rows, DistributionSummary statements, Counter errors) {
+            this.latency = latency;
+            this.rows = rows;
+            this.statements = statements;
+            this.errors = errors;
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package study.querydsl.monitor;
+
+/**
+ * 파라미터만 다른 같은 SQL 이 허용 횟수를 넘게 실행됨 (N+1 의심)
+ */
+public class RepeatedStatementException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RepeatedStatementException(StatementScope scope, int threshold) {
+        super("[" + scope.getName() + "] statement repeated " + scope.getMaxRepeatCount()
+                + " times (threshold " + threshold + "): " + scope.getRepeatedStatements());
+    }
+
+}
@@ -0,0 +1,170 @@
+package study.querydsl.monitor;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * show_sql/p6spy 로그 대신 쓰는 표본 SQL 추적
+ *
+ * p6spy 가 모든 문장 실행 후 호출하지만, 기록 대상이 아니면 난수 하나와 비교만 하고 끝난다.
+ * 기록 대상은 sample-rate 비율로 뽑은 문장, slow-threshold 보다 오래 걸린 문장, 예외가 난 문장이다.
+ * 기록 대상만 파라미터 값을 채운 SQL 을 만들고, 공백 정리와 로그 출력은 별도 스레드에서 한다.
+ * 큐가 가득 차면 버리고 droppedCount 만 올린다. (요청 스레드는 로그 I/O 를 기다리지 않는다)
+ *
+ * 기록하는 내용은 실행 시간, 파라미터 값을 채운 SQL, 예외 메시지다. (조건 값이 로그에 그대로 남는다)
+ * 설정은 JMX 의 sqltrace 엔드포인트로 재시작 없이 바꿀 수 있다. (SqlTraceEndpoint)
+ */
+@Slf4j
+@Component
+public class SampledStatementTracer extends SimpleJdbcEventListener {
+
+    private static final Logger SQL_LOG = LoggerFactory.getLogger("study.querydsl.sql");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private volatile boolean enabled;
+    private volatile double sampleRate;
+    private volatile long slowThresholdNanos;
+
+    private final BlockingQueue<Trace> queue;
+    private final Thread writer;
+
+    private final LongAdder statementCount = new LongAdder();
+    private final LongAdder tracedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+
+    public SampledStatementTracer(@Value("${monitor.sql-trace.enabled:true}") boolean enabled,
+                                  @Value("${monitor.sql-trace.sample-rate:0.01}") double sampleRate,
+                                  @Value("${monitor.sql-trace.slow-threshold:100ms}") Duration slowThreshold,
+                                  @Value("${monitor.sql-trace.queue-capacity:10000}") int queueCapacity) {
+        this.enabled = enabled;
+        setSampleRate(sampleRate);
+        setSlowThreshold(slowThreshold);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::drain, "sql-trace-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (!enabled) {
+            return;
+        }
+        statementCount.increment();
+
+        boolean slow = timeElapsedNanos >= slowThresholdNanos;
+        if (!slow && e == null && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        tracedCount.increment();
+        Trace trace = new Trace(statementInformation.getSqlWithValues(), timeElapsedNanos, slow, e);
+        if (!queue.offer(trace)) {
+            droppedCount.increment();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Trace trace = queue.take();
+                write(trace);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Trace trace) {
+        String sql = WHITESPACE.matcher(trace.sql).replaceAll(" ").trim();
+        long millis = TimeUnit.NANOSECONDS.toMillis(trace.elapsedNanos);
+        if (trace.exception != null) {
+            SQL_LOG.warn("[error] {} ms | {} | {}", millis, sql, trace.exception.getMessage());
+        } else if (trace.slow) {
+            SQL_LOG.warn("[slow] {} ms | {}", millis, sql);
+        } else {
+            SQL_LOG.info("[sampled] {} ms | {}", millis, sql);
+        }
+        writtenCount.increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.interrupt();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    public Duration getSlowThreshold() {
+        return Duration.ofNanos(slowThresholdNanos);
+    }
+
+    public void setSlowThreshold(Duration slowThreshold) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    public long getStatementCount() {
+        return statementCount.sum();
+    }
+
+    public long getTracedCount() {
+        return tracedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    private static class Trace {
+
+        private final String sql;
+        private final long elapsedNanos;
+        private final boolean slow;
+        private final SQLException exception;
+
+        Trace(String sql, long elapsedNanos, boolean slow, SQLException exception) {
+            this.sql = sql;
+            this.elapsedNanos = elapsedNanos;
+            this.slow = slow;
+            this.exception = exception;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package study.querydsl.monitor;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 표본 SQL 추적 설정 조회/변경, JMX(org.springframework.boot:type=Endpoint,name=Sqltrace)로만 노출한다.
+ *
+ * status     현재 설정과 건수
+ * configure  enabled, sampleRate, slowThresholdMillis (보낸 값만 바뀐다)
+ *
+ * 기록되는 문장은 study.querydsl.sql 로거에 실행 시간(ms), 파라미터 값을 채운 SQL 전체, 예외 메시지로 남는다.
+ * 조건 값(회원 이름 등)이 그대로 로그에 들어가고 sampleRate 를 올리면 모든 요청이 느려지므로
+ * HTTP 로 노출하지 않는다. (management.endpoints.web.exposure.include 에 넣으려면 인증을 먼저 붙일 것)
+ */
+@Component
+@Endpoint(id = "sqltrace")
+public class SqlTraceEndpoint {
+
+    private final SampledStatementTracer tracer;
+
+    public SqlTraceEndpoint(SampledStatementTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", tracer.isEnabled());
+        status.put("sampleRate", tracer.getSampleRate());
+        status.put("slowThresholdMillis", tracer.getSlowThreshold().toMillis());
+        status.put("statements", tracer.getStatementCount());
+        status.put("traced", tracer.getTracedCount());
+        status.put("dropped", tracer.getDroppedCount());
+        return status;
+    }
+
+    @WriteOperation
+    public Map<String, Object> configure(@Nullable Boolean enabled, @Nullable Double sampleRate,
+                                         @Nullable Long slowThresholdMillis) {
+        if (sampleRate != null) {
+            tracer.setSampleRate(sampleRate);
+        }
+        if (slowThresholdMillis != null) {
+            tracer.setSlowThreshold(Duration.ofMillis(slowThresholdMillis));
+        }
+        if (enabled != null) {
+            tracer.setEnabled(enabled);
+        }
+        return status();
+    }
+
+}
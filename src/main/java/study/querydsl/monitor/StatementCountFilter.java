@@ -0,0 +1,35 @@
+package study.querydsl.monitor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * HTTP 요청 하나를 StatementScope 로 감싸서 요청 단위로 SQL 반복 실행을 감지한다.
+ */
+@Component
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private final StatementCounter counter;
+
+    public StatementCountFilter(StatementCounter counter) {
+        this.counter = counter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        StatementScope scope = counter.open(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            scope.close();
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package study.querydsl.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 스레드별로 열려있는 StatementScope 에 실행된 SQL 을 기록한다.
+ *
+ * SQL 은 Hibernate StatementInspector(CountingStatementInspector)를 통해 들어온다.
+ * 스코프를 닫을 때 같은 문장이 repeat-threshold 번을 넘게 반복됐으면 경고 로그를 남기고,
+ * fail-on-repeat 가 켜져 있으면(테스트) RepeatedStatementException 을 던진다.
+ */
+@Slf4j
+@Component
+public class StatementCounter {
+
+    private final ThreadLocal<StatementScope> current = new ThreadLocal<>();
+
+    private final int repeatThreshold;
+    private final boolean failOnRepeat;
+
+    public StatementCounter(@Value("${monitor.statement.repeat-threshold:10}") int repeatThreshold,
+                            @Value("${monitor.statement.fail-on-repeat:false}") boolean failOnRepeat) {
+        this.repeatThreshold = repeatThreshold;
+        this.failOnRepeat = failOnRepeat;
+    }
+
+    /**
+     * 현재 스레드에 스코프를 연다. 이미 열린 스코프가 있으면 그 안에 중첩되고, 바깥 스코프에도 함께 기록된다.
+     */
+    public StatementScope open(String name) {
+        return open(name, true);
+    }
+
+    /**
+     * 문장 수만 세는 스코프를 연다. 문장을 정규화하거나 모으지 않으므로 반복(N+1) 검사는 하지 않는다.
+     * 호출마다 여는 메트릭 같은 핫 패스용
+     */
+    public StatementScope openCounting(String name) {
+        return open(name, false);
+    }
+
+    private StatementScope open(String name, boolean tracksStatements) {
+        StatementScope scope = new StatementScope(name, this, current.get(), tracksStatements);
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * 현재 스레드에서 가장 안쪽에 열린 스코프, 없으면 null
+     */
+    public StatementScope currentScope() {
+        return current.get();
+    }
+
+    /**
+     * 정규화는 문장을 모으는 스코프가 있을 때만, 문장마다 한 번 해서 바깥 스코프와 같이 쓴다.
+     */
+    void record(String sql) {
+        String normalized = null;
+        for (StatementScope scope = current.get(); scope != null; scope = scope.parent) {
+            if (normalized == null && scope.tracksStatements) {
+                normalized = StatementScope.normalize(sql);
+            }
+            scope.record(normalized);
+        }
+    }
+
+    void close(StatementScope scope) {
+        if (current.get() == scope) {
+            if (scope.parent == null) {
+                current.remove();
+            } else {
+                current.set(scope.parent);
+            }
+        }
+
+        if (scope.getMaxRepeatCount() > repeatThreshold) {
+            if (failOnRepeat) {
+                throw new RepeatedStatementException(scope, repeatThreshold);
+            }
+            log.warn("[{}] possible N+1: {} statements, repeated {}", scope.getName(),
+                    scope.getStatementCount(), scope.getRepeatedStatements());
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package study.querydsl.monitor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 요청/트랜잭션 같은 하나의 작업 단위 안에서 실행된 SQL 집계
+ *
+ * 파라미터 값만 다른 SQL 은 같은 문장으로 묶어서 센다.
+ * 같은 문장이 여러 번 실행됐다면 지연 로딩에 의한 N+1 일 가능성이 높다.
+ * 문장 수만 세는 스코프(StatementCounter.openCounting)는 문장을 모으지 않으므로 반복 검사도 하지 않는다.
+ */
+public class StatementScope implements AutoCloseable {
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final String name;
+    private final StatementCounter counter;
+    final StatementScope parent;
+    final boolean tracksStatements;
+
+    private final Map<String, Integer> counts = new HashMap<>();
+    private int statementCount;
+    private boolean closed;
+
+    StatementScope(String name, StatementCounter counter, StatementScope parent, boolean tracksStatements) {
+        this.name = name;
+        this.counter = counter;
+        this.parent = parent;
+        this.tracksStatements = tracksStatements;
+    }
+
+    /**
+     * @param normalized normalize 한 문장, 문장을 모으지 않는 스코프면 null
+     */
+    void record(String normalized) {
+        statementCount++;
+        if (tracksStatements) {
+            counts.merge(normalized, 1, Integer::sum);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * 실행된 문장(파라미터 값은 ? 로 바꾼 형태), 실행 계획 확인용
+     */
+    public Set<String> getStatements() {
+        return Collections.unmodifiableSet(counts.keySet());
+    }
+
+    /**
+     * 같은 문장이 가장 많이 반복된 횟수
+     */
+    public int getMaxRepeatCount() {
+        int max = 0;
+        for (int count : counts.values()) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    /**
+     * 두 번 이상 실행된 문장과 실행 횟수
+     */
+    public Map<String, Integer> getRepeatedStatements() {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        counts.forEach((sql, count) -> {
+            if (count > 1) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+
+    /**
+     * 같은 문장이 threshold 번을 넘게 실행됐으면 예외를 던진다.
+     */
+    public void assertRepeatedAtMost(int threshold) {
+        if (getMaxRepeatCount() > threshold) {
+            throw new RepeatedStatementException(this, threshold);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            counter.close(this);
+        }
+    }
+
+    static String normalize(String sql) {
+        String normalized = COMMENT.matcher(sql).replaceAll(" ");
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+}
@@ -0,0 +1,228 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Projections.bean/fields/constructor 대신 사용할 수 있는 DTO 프로젝션
+ *
+ * 리플렉션(Method.invoke, Constructor.newInstance)으로 행마다 DTO 를 만드는 대신
+ * 프로젝션을 만들 때 한 번 LambdaMetafactory 로 생성자/setter 를 직접 호출하는 람다를 만들어 둔다.
+ * 행마다 생기는 객체는 DTO 자신뿐이고, JPAQueryFactory.select(...) 에 그대로 넣어서 사용한다.
+ *
+ * <pre>
+ * queryFactory.select(DtoProjections.constructor(MemberDto.class, member.username, member.age))
+ * queryFactory.select(DtoProjections.bean(UserDto.class, member.username.as("name"), member.age))
+ * </pre>
+ */
+public final class DtoProjections {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private DtoProjections() {
+    }
+
+    /**
+     * 인자 수와 타입이 맞는 public 생성자를 사용 (인자 4개까지)
+     * Projections.constructor 와 같이 기본형 파라미터에 null(외부 조인, 집계 결과)이 오면 기본값(0, false)을 넘긴다.
+     */
+    public static <T> FactoryExpression<T> constructor(Class<T> type, Expression<?>... args) {
+        Constructor<?> constructor = findConstructor(type, args);
+        return new LambdaConstructorExpression<>(type, args, constructorFactory(type, constructor));
+    }
+
+    /**
+     * 기본 생성자 + setter 사용, 인자 이름(경로 이름 또는 as 별칭)으로 setter 를 찾는다.
+     */
+    public static <T> FactoryExpression<T> bean(Class<T> type, Expression<?>... args) {
+        Supplier<Object> creator = noArgsFactory(type);
+        @SuppressWarnings("unchecked")
+        BiConsumer<Object, Object>[] setters = (BiConsumer<Object, Object>[]) new BiConsumer<?, ?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            setters[i] = setterFactory(type, findSetter(type, propertyName(args[i]), args[i].getType()));
+        }
+        return new LambdaBeanExpression<>(type, args, creator, setters);
+    }
+
+    interface ConstructorFactory {
+        Object create(Object[] args);
+    }
+
+    interface Factory1 {
+        Object create(Object a);
+    }
+
+    interface Factory2 {
+        Object create(Object a, Object b);
+    }
+
+    interface Factory3 {
+        Object create(Object a, Object b, Object c);
+    }
+
+    interface Factory4 {
+        Object create(Object a, Object b, Object c, Object d);
+    }
+
+    private static ConstructorFactory constructorFactory(Class<?> type, Constructor<?> constructor) {
+        ConstructorFactory factory = lambdaFactory(type, constructor);
+        Object[] defaults = primitiveDefaults(constructor.getParameterTypes());
+        return defaults == null ? factory : args -> factory.create(withDefaults(args, defaults));
+    }
+
+    private static ConstructorFactory lambdaFactory(Class<?> type, Constructor<?> constructor) {
+        try {
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+            switch (constructor.getParameterCount()) {
+                case 1:
+                    Factory1 f1 = (Factory1) metafactory(Factory1.class, handle, type);
+                    return args -> f1.create(args[0]);
+                case 2:
+                    Factory2 f2 = (Factory2) metafactory(Factory2.class, handle, type);
+                    return args -> f2.create(args[0], args[1]);
+                case 3:
+                    Factory3 f3 = (Factory3) metafactory(Factory3.class, handle, type);
+                    return args -> f3.create(args[0], args[1], args[2]);
+                case 4:
+                    Factory4 f4 = (Factory4) metafactory(Factory4.class, handle, type);
+                    return args -> f4.create(args[0], args[1], args[2], args[3]);
+                default:
+                    throw new IllegalArgumentException("constructor projection supports 1 to 4 arguments: " + constructor);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("constructor is not accessible: " + constructor, e);
+        }
+    }
+
+    /**
+     * @return 파라미터별 기본형 기본값(참조형은 null), 기본형 파라미터가 없으면 null
+     */
+    private static Object[] primitiveDefaults(Class<?>[] parameterTypes) {
+        Object[] defaults = null;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i].isPrimitive()) {
+                if (defaults == null) {
+                    defaults = new Object[parameterTypes.length];
+                }
+                defaults[i] = Array.get(Array.newInstance(parameterTypes[i], 1), 0);
+            }
+        }
+        return defaults;
+    }
+
+    /**
+     * 기본형 자리에 null 이 있으면 복사본에 기본값을 채운다. 없으면 그대로 돌려준다.
+     */
+    private static Object[] withDefaults(Object[] args, Object[] defaults) {
+        Object[] result = args;
+        for (int i = 0; i < defaults.length; i++) {
+            if (args[i] == null && defaults[i] != null) {
+                if (result == args) {
+                    result = args.clone();
+                }
+                result[i] = defaults[i];
+            }
+        }
+        return result;
+    }
+
+    private static Object metafactory(Class<?> functionalInterface, MethodHandle constructor, Class<?> type) {
+        int arity = constructor.type().parameterCount();
+        MethodType erased = MethodType.genericMethodType(arity);
+        MethodType instantiated = constructor.type().wrap().changeReturnType(type);
+        return invokeMetafactory(functionalInterface, "create", erased, constructor, instantiated);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> noArgsFactory(Class<?> type) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(type, MethodType.methodType(void.class));
+            return (Supplier<Object>) invokeMetafactory(Supplier.class, "get",
+                    MethodType.genericMethodType(0), handle, MethodType.methodType(type));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("public no-args constructor required: " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setterFactory(Class<?> type, Method setter) {
+        try {
+            MethodHandle handle = LOOKUP.unreflect(setter);
+            MethodType instantiated = MethodType.methodType(void.class, type, handle.type().wrap().parameterType(1));
+            return (BiConsumer<Object, Object>) invokeMetafactory(BiConsumer.class, "accept",
+                    MethodType.methodType(void.class, Object.class, Object.class), handle, instantiated);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("setter is not accessible: " + setter, e);
+        }
+    }
+
+    private static Object invokeMetafactory(Class<?> functionalInterface, String methodName, MethodType erased,
+                                            MethodHandle implementation, MethodType instantiated) {
+        try {
+            return LambdaMetafactory.metafactory(LOOKUP, methodName, MethodType.methodType(functionalInterface),
+                    erased, implementation, instantiated)
+                    .getTarget()
+                    .invoke();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("cannot create factory for " + implementation, e);
+        }
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, Expression<?>[] args) {
+        for (Constructor<?> constructor : type.getConstructors()) {
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length != args.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < args.length && matches; i++) {
+                matches = wrap(parameterTypes[i]).isAssignableFrom(args[i].getType());
+            }
+            if (matches) {
+                return constructor;
+            }
+        }
+        throw new IllegalArgumentException("no public constructor of " + type.getName() + " matches " + args.length + " arguments");
+    }
+
+    private static Method findSetter(Class<?> type, String property, Class<?> argType) {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == 1
+                    && !Modifier.isStatic(method.getModifiers())
+                    && wrap(method.getParameterTypes()[0]).isAssignableFrom(argType)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("no setter " + name + "(" + argType.getSimpleName() + ") on " + type.getName());
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static String propertyName(Expression<?> arg) {
+        if (arg instanceof Path) {
+            return ((Path<?>) arg).getMetadata().getName();
+        }
+        if (arg instanceof Operation && ((Operation<?>) arg).getOperator() == Ops.ALIAS) {
+            return propertyName(((Operation<?>) arg).getArg(1));
+        }
+        throw new IllegalArgumentException("bean projection argument needs a path or an alias: " + arg);
+    }
+
+}
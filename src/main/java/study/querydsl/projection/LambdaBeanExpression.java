@@ -0,0 +1,55 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * LambdaMetafactory 로 만든 기본 생성자/setter 호출 람다를 사용하는 FactoryExpression
+ * null 값은 setter 를 호출하지 않는다. (Projections.bean 과 동일)
+ */
+class LambdaBeanExpression<T> extends FactoryExpressionBase<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Expression<?>> args;
+    private final transient Supplier<Object> creator;
+    private final transient BiConsumer<Object, Object>[] setters;
+
+    LambdaBeanExpression(Class<? extends T> type, Expression<?>[] args,
+                         Supplier<Object> creator, BiConsumer<Object, Object>[] setters) {
+        super(type);
+        this.args = Collections.unmodifiableList(Arrays.asList(args.clone()));
+        this.creator = creator;
+        this.setters = setters;
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T newInstance(Object... values) {
+        Object bean = creator.get();
+        for (int i = 0; i < setters.length; i++) {
+            if (values[i] != null) {
+                setters[i].accept(bean, values[i]);
+            }
+        }
+        return (T) bean;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+}
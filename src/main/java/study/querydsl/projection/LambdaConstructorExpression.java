@@ -0,0 +1,43 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LambdaMetafactory 로 만든 생성자 호출 람다를 사용하는 FactoryExpression
+ */
+class LambdaConstructorExpression<T> extends FactoryExpressionBase<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Expression<?>> args;
+    private final transient DtoProjections.ConstructorFactory factory;
+
+    LambdaConstructorExpression(Class<? extends T> type, Expression<?>[] args, DtoProjections.ConstructorFactory factory) {
+        super(type);
+        this.args = Collections.unmodifiableList(Arrays.asList(args.clone()));
+        this.factory = factory;
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T newInstance(Object... values) {
+        return (T) factory.create(values);
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+}
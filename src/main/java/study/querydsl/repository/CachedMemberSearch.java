@@ -0,0 +1,113 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import org.springframework.stereotype.Repository;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 동적 검색(searchMember1/searchMember2)의 JPQL 캐시
+ *
+ * 조건 조합(username 만, age 만, 둘 다, 없음)마다 파라미터 자리(Param)로 쿼리를 한 번만 만들고
+ * 직렬화한 JPQL 을 보관한다. 같은 조합이면 같은 JPQL 문자열이 나가므로 Hibernate 쿼리 플랜 캐시도 그대로 재사용되고,
+ * 요청마다 표현식 트리 생성/직렬화 없이 파라미터 바인딩만 한다.
+ */
+@Repository
+public class CachedMemberSearch {
+
+    private static final int USERNAME_BIT = 1;
+    private static final int AGE_BIT = 1 << 1;
+
+    private static final Param<String> USERNAME_PARAM = new Param<>(String.class, "username");
+    private static final Param<Integer> AGE_PARAM = new Param<>(Integer.class, "age");
+
+    private final EntityManager em;
+    private final ConcurrentMap<Integer, CompiledQuery> queries = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public CachedMemberSearch(EntityManager em) {
+        this.em = em;
+    }
+
+    public List<Member> search(String usernameCond, Integer ageCond) {
+        int mask = (usernameCond != null ? USERNAME_BIT : 0) | (ageCond != null ? AGE_BIT : 0);
+
+        CompiledQuery compiled = queries.get(mask);
+        if (compiled != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+            compiled = queries.computeIfAbsent(mask, this::compile);
+        }
+
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+        if (usernameCond != null) {
+            params.put(USERNAME_PARAM, usernameCond);
+        }
+        if (ageCond != null) {
+            params.put(AGE_PARAM, ageCond);
+        }
+
+        TypedQuery<Member> query = em.createQuery(compiled.jpql, Member.class);
+        JPAUtil.setConstants(query, compiled.constantToLabel, params);
+        return query.getResultList();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public int getCachedQueryCount() {
+        return queries.size();
+    }
+
+    private CompiledQuery compile(int mask) {
+        Predicate[] where = {
+                (mask & USERNAME_BIT) != 0 ? member.username.eq(USERNAME_PARAM) : null,
+                (mask & AGE_BIT) != 0 ? member.age.eq(AGE_PARAM) : null
+        };
+        QueryMetadata metadata = new JPAQuery<Member>()
+                .select(member)
+                .from(member)
+                .where(where)
+                .getMetadata();
+
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(metadata, false, null);
+        return new CompiledQuery(serializer.toString(), new HashMap<>(serializer.getConstantToAllLabels()));
+    }
+
+    private static class CompiledQuery {
+
+        private final String jpql;
+        private final Map<Object, String> constantToLabel;
+
+        CompiledQuery(String jpql, Map<Object, String> constantToLabel) {
+            this.jpql = jpql;
+            this.constantToLabel = constantToLabel;
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 키셋(seek) 페이징 결과
+ *
+ * nextToken 은 마지막 행의 정렬 키를 담은 불투명 문자열이라 클라이언트는 그대로 다시 넘기기만 하면 된다.
+ * total 은 카운트 쿼리를 요청했을 때만 채워진다.
+ */
+@Getter
+@ToString(of = {"hasNext", "nextToken", "total"})
+public class KeysetSlice<T> {
+
+    private final List<T> content;
+    private final boolean hasNext;
+    private final String nextToken;
+    private final Long total;
+
+    public KeysetSlice(List<T> content, boolean hasNext, String nextToken, Long total) {
+        this.content = content;
+        this.hasNext = hasNext;
+        this.nextToken = nextToken;
+        this.total = total;
+    }
+
+}
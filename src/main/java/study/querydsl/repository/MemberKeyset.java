@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import study.querydsl.entity.Member;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 키셋 페이징의 정렬 키 (age, username, id)
+ *
+ * username 은 null 일 수 있으므로 nulls first 로 정렬하고 토큰에서도 null 을 구분한다.
+ */
+class MemberKeyset {
+
+    static final OrderSpecifier<?>[] ORDER = {
+            member.age.asc(),
+            member.username.asc().nullsFirst(),
+            member.id.asc()
+    };
+
+    private static final char SEPARATOR = ':';
+    private static final char NULL_MARK = '-';
+    private static final char VALUE_MARK = '+';
+
+    private final int age;
+    private final String username;
+    private final long id;
+
+    MemberKeyset(int age, String username, long id) {
+        this.age = age;
+        this.username = username;
+        this.id = id;
+    }
+
+    static MemberKeyset of(Member m) {
+        return new MemberKeyset(m.getAge(), m.getUsername(), m.getId());
+    }
+
+    /**
+     * 이 키 다음에 오는 행
+     * age >= :age and (age > :age or (age = :age and username > :username) or (age = :age and username = :username and id > :id))
+     *
+     * 앞의 age >= :age 는 결과를 바꾸지 않지만, OR 만 있으면 DB 가 인덱스를 정렬 용도로만 쓰고 처음부터 읽는다.
+     * 범위 조건이 있어야 (age, username, id) 인덱스에서 :age 위치부터 읽기 시작한다.
+     */
+    BooleanExpression after() {
+        BooleanExpression sameAge = member.age.eq(age);
+        BooleanExpression sameUsername;
+        BooleanExpression laterUsername;
+        if (username == null) {
+            sameUsername = member.username.isNull();
+            laterUsername = member.username.isNotNull();
+        } else {
+            sameUsername = member.username.eq(username);
+            laterUsername = member.username.gt(username);
+        }
+        return member.age.goe(age).and(member.age.gt(age)
+                .or(sameAge.and(laterUsername))
+                .or(sameAge.and(sameUsername).and(member.id.gt(id))));
+    }
+
+    String encode() {
+        String raw = age + String.valueOf(SEPARATOR) + id + SEPARATOR
+                + (username == null ? String.valueOf(NULL_MARK) : VALUE_MARK + username);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static MemberKeyset decode(String token) {
+        String raw;
+        int first;
+        int second;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            first = raw.indexOf(SEPARATOR);
+            second = raw.indexOf(SEPARATOR, first + 1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid continuation token: " + token, e);
+        }
+        if (first < 0 || second < 0 || second + 1 >= raw.length()) {
+            throw new IllegalArgumentException("invalid continuation token: " + token);
+        }
+
+        char mark = raw.charAt(second + 1);
+        if (mark != NULL_MARK && mark != VALUE_MARK) {
+            throw new IllegalArgumentException("invalid continuation token: " + token);
+        }
+        try {
+            int age = Integer.parseInt(raw.substring(0, first));
+            long id = Long.parseLong(raw.substring(first + 1, second));
+            String username = mark == NULL_MARK ? null : raw.substring(second + 2);
+            return new MemberKeyset(age, username, id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid continuation token: " + token, e);
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@Repository
+public class MemberQueryRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final PagedQueries pagedQueries;
+
+    public MemberQueryRepository(EntityManager em, JPAQueryFactory queryFactory, PagedQueries pagedQueries) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.pagedQueries = pagedQueries;
+    }
+
+    /**
+     * 서버 커서(ScrollableResults)로 회원 DTO를 fetchSize 단위로 읽는다.
+     * DTO는 영속성 컨텍스트에 올라가지 않으므로 전체 건수와 상관없이 메모리가 일정하다.
+     * 커서를 닫아야 하므로 트랜잭션 안에서 try-with-resources로 사용해야 한다.
+     */
+    public Stream<MemberDto> streamMemberDto(int fetchSize) {
+        CloseableIterator<MemberDto> iterator = queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .orderBy(member.id.asc())
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .iterate();
+
+        return toStream(iterator);
+    }
+
+    /**
+     * 서버 커서로 회원 엔티티를 읽는다.
+     * 다음 행을 읽을 때 이전 회원을 준영속(detach) 상태로 만들어서 영속성 컨텍스트에 쌓이지 않는다.
+     * 읽기 전용 힌트로 스냅샷도 만들지 않는다.
+     */
+    public Stream<Member> streamMembers(int fetchSize) {
+        CloseableIterator<Member> iterator = queryFactory
+                .selectFrom(member)
+                .orderBy(member.id.asc())
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate();
+
+        return toStream(new DetachingIterator(iterator));
+    }
+
+    /**
+     * 키셋(seek) 페이징
+     * offset 처럼 앞의 행을 읽고 버리지 않고 (age, username, id) 정렬 키 다음 위치부터 바로 찾는다.
+     * size + 1 건을 조회해서 다음 페이지 존재 여부를 판단하므로 카운트 쿼리가 필요 없다.
+     *
+     * @param continuationToken 이전 페이지의 nextToken, 첫 페이지는 null
+     * @param withTotal         true 면 전체 건수 카운트 쿼리를 추가로 실행한다.
+     */
+    public KeysetSlice<Member> searchByKeyset(String continuationToken, int size, boolean withTotal) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        JPAQuery<Member> query = queryFactory
+                .selectFrom(member)
+                .orderBy(MemberKeyset.ORDER)
+                .limit(size + 1);
+        if (continuationToken != null) {
+            query.where(MemberKeyset.decode(continuationToken).after());
+        }
+
+        List<Member> content = query.fetch();
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = content.subList(0, size);
+        }
+
+        String nextToken = hasNext ? MemberKeyset.of(content.get(size - 1)).encode() : null;
+        Long total = withTotal ? queryFactory.select(member.count()).from(member).fetchOne() : null;
+        return new KeysetSlice<>(content, hasNext, nextToken, total);
+    }
+
+    /**
+     * 회원과 팀을 함께 페이징 조회 (paging2 의 fetchResults 대체)
+     * 팀 이름 조건이 없으면 카운트 쿼리는 팀 조인 없이 select count(*) from Member 가 된다.
+     * 팀 이름 조건이 있으면 팀 없는 회원은 어차피 걸러지므로 내부 조인으로 바꿔서
+     * DB 가 team.name 인덱스로 팀을 먼저 찾고 회원을 조인할 수 있게 한다. (외부 조인은 조인 순서를 바꾸지 못한다)
+     */
+    public Page<Member> searchPageWithTeam(String teamName, Pageable pageable) {
+        JPAQuery<Member> query = queryFactory.selectFrom(member);
+        if (teamName != null) {
+            query.join(member.team, team).fetchJoin()
+                    .where(team.name.eq(teamName));
+        } else {
+            query.leftJoin(member.team, team).fetchJoin();
+        }
+        query.orderBy(member.username.desc());
+        return pagedQueries.fetchPage(query, pageable);
+    }
+
+    private <T> Stream<T> toStream(CloseableIterator<T> iterator) {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    private class DetachingIterator implements CloseableIterator<Member> {
+
+        private final CloseableIterator<Member> delegate;
+        private Member previous;
+
+        DetachingIterator(CloseableIterator<Member> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Member next() {
+            detachPrevious();
+            previous = delegate.next();
+            return previous;
+        }
+
+        @Override
+        public void close() {
+            detachPrevious();
+            delegate.close();
+        }
+
+        private void detachPrevious() {
+            if (previous != null) {
+                em.detach(previous);
+                previous = null;
+            }
+        }
+    }
+
+}
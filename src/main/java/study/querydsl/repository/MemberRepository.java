@@ -0,0 +1,15 @@
+package study.querydsl.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+
+/**
+ * 회원 저장/단건 조회는 Spring Data JPA, 검색은 MemberRepositoryCustom(Querydsl)
+ */
+public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom {
+
+    List<Member> findByUsername(String username);
+
+}
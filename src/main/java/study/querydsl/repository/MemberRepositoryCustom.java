@@ -0,0 +1,27 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+
+/**
+ * 회원 검색, 엔티티가 아니라 MemberTeamDto 로만 돌려준다.
+ *
+ * Pageable 정렬은 username, age, teamName, memberId 만 받고, 항상 memberId 를 마지막 정렬 키로 붙인다.
+ */
+public interface MemberRepositoryCustom {
+
+    List<MemberTeamDto> search(MemberSearchCondition condition);
+
+    Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * 전체 건수 없이 다음 페이지 존재 여부만 확인한다. (카운트 쿼리 없음)
+     */
+    Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable);
+
+}
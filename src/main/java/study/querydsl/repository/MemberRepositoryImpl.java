@@ -0,0 +1,125 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import study.querydsl.cache.QueryResultCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberRepositoryCustom 구현 (Spring Data 가 Impl 접미사로 찾아서 MemberRepository 에 합친다)
+ *
+ * 모든 검색이 같은 쿼리(baseQuery)에서 출발하므로 조인 방식, 정렬, 페이징 정책이 한 곳에서 정해진다.
+ * - 팀 이름 조건이 있으면 내부 조인, 없으면 팀 없는 회원도 나오도록 left join 한다. (DTO 조회라 페치 조인 없음)
+ * - 페이지/슬라이스는 PagedQueries 를 거치므로 fetch size 와 카운트 쿼리 최적화가 그대로 적용된다.
+ * - 결과는 QueryResultCache 에 담긴다. 조건은 항상 같은 순서로 붙으므로 같은 조건이면 같은 키가 된다.
+ */
+@Transactional(readOnly = true)
+public class MemberRepositoryImpl implements MemberRepositoryCustom {
+
+    private static final Map<String, ComparableExpressionBase<?>> SORTABLE = new HashMap<>();
+
+    static {
+        SORTABLE.put("username", member.username);
+        SORTABLE.put("age", member.age);
+        SORTABLE.put("teamName", team.name);
+        SORTABLE.put("memberId", member.id);
+    }
+
+    private final JPAQueryFactory queryFactory;
+    private final PagedQueries pagedQueries;
+    private final QueryResultCache queryResultCache;
+
+    public MemberRepositoryImpl(JPAQueryFactory queryFactory, PagedQueries pagedQueries,
+                                QueryResultCache queryResultCache) {
+        this.queryFactory = queryFactory;
+        this.pagedQueries = pagedQueries;
+        this.queryResultCache = queryResultCache;
+    }
+
+    @Override
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return queryResultCache.fetch(baseQuery(condition, Sort.unsorted()));
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<MemberTeamDto> query = baseQuery(condition, pageable.getSort());
+        return queryResultCache.get(query, pageable, () -> pagedQueries.fetchPage(query, pageable));
+    }
+
+    @Override
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<MemberTeamDto> query = baseQuery(condition, pageable.getSort());
+        return queryResultCache.get(query, pageable, () -> pagedQueries.fetchSlice(query, pageable));
+    }
+
+    private JPAQuery<MemberTeamDto> baseQuery(MemberSearchCondition condition, Sort sort) {
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+                .from(member);
+        if (StringUtils.hasText(condition.getTeamName())) {
+            query.join(member.team, team);
+        } else {
+            query.leftJoin(member.team, team);
+        }
+        return query
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .orderBy(orderBy(sort));
+    }
+
+    private OrderSpecifier<?>[] orderBy(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> expression = SORTABLE.get(order.getProperty());
+            if (expression == null) {
+                throw new UnsupportedSortException(order.getProperty());
+            }
+            orders.add(order.isAscending() ? expression.asc() : expression.desc());
+        }
+        //같은 값끼리 페이지 경계가 흔들리지 않도록 항상 ID 로 마무리
+        if (orders.stream().noneMatch(o -> o.getTarget().equals(member.id))) {
+            orders.add(new OrderSpecifier<>(Order.ASC, member.id));
+        }
+        return orders.toArray(new OrderSpecifier<?>[0]);
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return StringUtils.hasText(username) ? member.username.eq(username) : null;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+}
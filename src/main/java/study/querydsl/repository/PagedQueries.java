@@ -0,0 +1,381 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * fetchResults()/fetchCount() 대신 쓰는 페이징
+ *
+ * 1. 카운트 쿼리를 꼭 필요할 때만 실행한다. (PageableExecutionUtils)
+ *    첫 페이지인데 조회 건수가 페이지 크기보다 작거나, 마지막 페이지면 offset + 조회 건수가 전체 건수다.
+ * 2. 카운트 쿼리는 내용 쿼리에서 필요 없는 부분을 빼고 만든다.
+ *    order by, select 절, 페치 조인 플래그를 제거하고, 건수에 영향이 없는 to-one left join 중
+ *    where/group by/having 이나 남은 조인에서 참조하지 않는 조인은 제거한다. (to-one 여부는 JPA 메타모델로 판단)
+ *    group by 기준이 하나(having 없음)이거나 distinct 의 select 절이 값 하나면 count(distinct 값) 한 행으로 센다.
+ *    (루트 엔티티가 아니면 null 도 한 그룹이므로 null 이 있으면 하나 더한다)
+ *    group by 기준이 여러 개이거나 having 이 있거나 distinct 의 select 절이 여러 컬럼이면 count(distinct) 로 셀 수 없어서
+ *    그룹/중복 제거한 결과를 모두 읽어 행 수를 센다. 이 경우는 건수만큼 행을 가져오므로 결과가 많으면 비싸다.
+ * 3. 비싼 조건이면 fetchPageWithCachedCount 로 같은 조건의 전체 건수를 잠시 캐시해서 쓴다.
+ *
+ * 정렬은 내용 쿼리의 orderBy 를 그대로 사용하고 Pageable 의 offset/size 만 적용한다.
+ * 내용 쿼리의 JDBC fetch size 는 페이지 크기로 맞춰서 한 페이지를 한 번의 왕복으로 읽는다.
+ */
+@Repository
+public class PagedQueries {
+
+    private static final Set<JoinFlag> FETCH_FLAGS = new HashSet<>();
+
+    static {
+        FETCH_FLAGS.add(JPAQueryMixin.FETCH);
+        FETCH_FLAGS.add(JPAQueryMixin.FETCH_ALL_PROPERTIES);
+    }
+
+    private final EntityManager em;
+    private final Cache<String, Long> countCache;
+
+    public PagedQueries(EntityManager em,
+                        @Value("${paging.count-cache.ttl:30s}") Duration ttl,
+                        @Value("${paging.count-cache.maximum-size:10000}") long maximumSize) {
+        this.em = em;
+        this.countCache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public <T> Page<T> fetchPage(JPAQuery<T> query, Pageable pageable) {
+        CountQuery countQuery = countQuery(query);
+        List<T> content = fetchContent(query, pageable);
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetch);
+    }
+
+    /**
+     * 같은 카운트 쿼리(조건 값 포함)의 전체 건수를 paging.count-cache.ttl 동안 재사용한다.
+     * 그 사이에 추가/삭제된 행은 전체 건수에 반영되지 않는다.
+     */
+    public <T> Page<T> fetchPageWithCachedCount(JPAQuery<T> query, Pageable pageable) {
+        CountQuery countQuery = countQuery(query);
+        List<T> content = fetchContent(query, pageable);
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.get(countQuery.cacheKey(), key -> countQuery.fetch()));
+    }
+
+    /**
+     * 전체 건수 없이 size + 1 건을 조회해서 다음 페이지 존재 여부만 판단한다.
+     */
+    public <T> Slice<T> fetchSlice(JPAQuery<T> query, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.fetch(), pageable, false);
+        }
+        List<T> content = query
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1)
+                .setHint(QueryHints.FETCH_SIZE, pageable.getPageSize() + 1)
+                .fetch();
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    public void evictCounts() {
+        countCache.invalidateAll();
+    }
+
+    private <T> List<T> fetchContent(JPAQuery<T> query, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return query.fetch();
+        }
+        return query
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .setHint(QueryHints.FETCH_SIZE, pageable.getPageSize())
+                .fetch();
+    }
+
+    CountQuery countQuery(JPAQuery<?> query) {
+        QueryMetadata source = query.getMetadata();
+        List<Expression<?>> groupBy = source.getGroupBy();
+        boolean singleGroup = groupBy.size() == 1 && source.getHaving() == null;
+
+        DefaultQueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.setValidate(false);
+        for (JoinExpression join : requiredJoins(source)) {
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!FETCH_FLAGS.contains(flag)) {
+                    metadata.addJoinFlag(flag);
+                }
+            }
+        }
+        metadata.addWhere(source.getWhere());
+        if (!singleGroup) {
+            for (Expression<?> expression : groupBy) {
+                metadata.addGroupBy(expression);
+            }
+        }
+        metadata.addHaving(source.getHaving());
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            setParam(metadata, param.getKey(), param.getValue());
+        }
+
+        JPAQuery<?> countQuery = new JPAQuery<Void>(em, metadata);
+        if (singleGroup) {
+            //그룹 수 = 그룹 기준 값의 종류 수
+            return new CountQuery(countQuery.select(countDistinct(groupBy.get(0), source)), false);
+        }
+        if (!groupBy.isEmpty()) {
+            //그룹 수 = 전체 건수
+            return new CountQuery(countQuery.select(groupBy.toArray(new Expression<?>[0])), true);
+        }
+        if (source.isDistinct()) {
+            Expression<?> projection = source.getProjection();
+            if (!(projection instanceof FactoryExpression)) {
+                return new CountQuery(countQuery.select(countDistinct(projection, source)), false);
+            }
+            //count(distinct) 는 값 하나만 받으므로 여러 컬럼은 중복 제거한 결과의 행 수를 센다.
+            return new CountQuery(countQuery.distinct().select(projection), true);
+        }
+        return new CountQuery(countQuery.select(Wildcard.count), false);
+    }
+
+    /**
+     * 값의 종류 수, count(distinct) 는 null 을 세지 않으므로 null 인 행이 있으면 하나 더한다.
+     * 루트 엔티티는 null 이 될 수 없어서 count(distinct 별칭)만 쓴다.
+     */
+    private static Expression<Long> countDistinct(Expression<?> expression, QueryMetadata source) {
+        if (expression instanceof EntityPath && expression.equals(joinAlias(source.getJoins().get(0).getTarget()))) {
+            return Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, expression);
+        }
+        return Expressions.numberTemplate(Long.class,
+                "count(distinct {0}) + case when count({0}) < count(*) then 1 else 0 end", expression);
+    }
+
+    /**
+     * 뒤쪽 조인부터 보면서 제거할 수 있는 조인을 뺀다. 뒤쪽 조인이 앞쪽 별칭을 참조할 수 있으므로
+     * 남긴 조인의 대상/조건은 참조 목록에 추가한다.
+     */
+    private List<JoinExpression> requiredJoins(QueryMetadata source) {
+        Set<Path<?>> referenced = new HashSet<>();
+        collectPaths(source.getWhere(), referenced);
+        collectPaths(source.getHaving(), referenced);
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            collectPaths(groupBy, referenced);
+        }
+        if (source.isDistinct()) {
+            //중복 제거 기준이 select 절이므로 select 절이 참조하는 조인도 남긴다.
+            collectPaths(source.getProjection(), referenced);
+        }
+
+        List<JoinExpression> joins = source.getJoins();
+        List<JoinExpression> required = new ArrayList<>();
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (i > 0 && isRemovable(join, referenced)) {
+                continue;
+            }
+            required.add(join);
+            collectPaths(joinSource(join.getTarget()), referenced);
+            collectPaths(join.getCondition(), referenced);
+        }
+        Collections.reverse(required);
+        return required;
+    }
+
+    private boolean isRemovable(JoinExpression join, Set<Path<?>> referenced) {
+        if (join.getType() != JoinType.LEFTJOIN) {
+            return false;
+        }
+        Expression<?> alias = joinAlias(join.getTarget());
+        Expression<?> target = joinSource(join.getTarget());
+        if (!(target instanceof Path) || referenced.contains(alias)) {
+            return false;
+        }
+        return isToOne((Path<?>) target);
+    }
+
+    private boolean isToOne(Path<?> path) {
+        Path<?> parent = path.getMetadata().getParent();
+        if (parent == null) {
+            return false;
+        }
+        try {
+            ManagedType<?> type = em.getMetamodel().managedType(parent.getType());
+            Attribute.PersistentAttributeType attributeType =
+                    type.getAttribute(path.getMetadata().getName()).getPersistentAttributeType();
+            return attributeType == Attribute.PersistentAttributeType.MANY_TO_ONE
+                    || attributeType == Attribute.PersistentAttributeType.ONE_TO_ONE;
+        } catch (IllegalArgumentException e) {
+            //메타모델에 없는 타입/속성이면 판단하지 않고 남긴다.
+            return false;
+        }
+    }
+
+    /*join(member.team, team) 의 대상은 alias(member.team, team) 연산*/
+    private static Expression<?> joinSource(Expression<?> target) {
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(0);
+        }
+        return target;
+    }
+
+    private static Expression<?> joinAlias(Expression<?> target) {
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(1);
+        }
+        return target;
+    }
+
+    private static void collectPaths(Expression<?> expression, Set<Path<?>> paths) {
+        if (expression != null) {
+            expression.accept(PathCollector.INSTANCE, paths);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <P> void setParam(DefaultQueryMetadata metadata, ParamExpression<P> param, Object value) {
+        metadata.setParam(param, (P) value);
+    }
+
+    static class CountQuery {
+
+        private final JPAQuery<?> query;
+        private final boolean grouped;
+
+        private CountQuery(JPAQuery<?> query, boolean grouped) {
+            this.query = query;
+            this.grouped = grouped;
+        }
+
+        long fetch() {
+            if (grouped) {
+                return query.fetch().size();
+            }
+            Object count = query.fetchOne();
+            return count == null ? 0 : ((Number) count).longValue();
+        }
+
+        /*JPQL 에는 조건 값이 ?1 로 들어가므로 조건식 문자열(값 포함)을 같이 키로 쓴다.*/
+        String cacheKey() {
+            QueryMetadata metadata = query.getMetadata();
+            return query + "|" + metadata.getWhere() + "|" + metadata.getHaving() + "|" + metadata.getParams();
+        }
+
+        @Override
+        public String toString() {
+            return query.toString();
+        }
+    }
+
+    /**
+     * 식에 쓰인 모든 경로와 그 상위 경로(member.team.name -&gt; member.team, member)를 모은다.
+     */
+    private static class PathCollector implements Visitor<Void, Set<Path<?>>> {
+
+        static final PathCollector INSTANCE = new PathCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Path<?>> paths) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Path<?>> paths) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, paths);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Path<?>> paths) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, paths);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Path<?>> paths) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Path<?>> paths) {
+            for (Path<?> path = expr; path != null; path = path.getMetadata().getParent()) {
+                paths.add(path);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Path<?>> paths) {
+            QueryMetadata metadata = expr.getMetadata();
+            for (JoinExpression join : metadata.getJoins()) {
+                collectPaths(join.getTarget(), paths);
+                collectPaths(join.getCondition(), paths);
+            }
+            collectPaths(metadata.getWhere(), paths);
+            collectPaths(metadata.getHaving(), paths);
+            collectPaths(metadata.getProjection(), paths);
+            for (Expression<?> groupBy : metadata.getGroupBy()) {
+                collectPaths(groupBy, paths);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Path<?>> paths) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    ((Expression<?>) arg).accept(this, paths);
+                }
+            }
+            return null;
+        }
+    }
+
+}
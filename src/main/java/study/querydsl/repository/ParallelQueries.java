@@ -0,0 +1,190 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 서로 독립적인 조회를 동시에 실행하고 결과를 모은다.
+ *
+ * 작업마다 자기 스레드에서 읽기 전용 트랜잭션을 시작하므로 EntityManager(영속성 컨텍스트)와 커넥션도 따로 쓴다.
+ * 전체 지연 시간은 조회 시간의 합이 아니라 가장 느린 조회 시간이 된다.
+ *
+ * 가상 스레드를 쓸 수 있는 JDK(21+)면 가상 스레드로, 아니면 max-concurrency 크기의 스레드 풀로 실행한다.
+ * 어느 쪽이든 동시에 커넥션을 잡는 작업 수는 max-concurrency 로 제한하므로 커넥션 풀보다 작게 설정한다.
+ *
+ * ParallelQueries.Scope scope = parallelQueries.open();
+ * ParallelQueries.Result&lt;Long&gt; count = scope.fork(queryFactory -&gt; ...);
+ * scope.join();
+ * count.get();
+ */
+@Slf4j
+@Repository
+public class ParallelQueries {
+
+    private final JPAQueryFactory queryFactory;
+    private final PlatformTransactionManager transactionManager;
+    private final Duration timeout;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    public ParallelQueries(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+                           @Value("${query.parallel.max-concurrency:4}") int maxConcurrency,
+                           @Value("${query.parallel.timeout:3s}") Duration timeout) {
+        this.queryFactory = queryFactory;
+        this.transactionManager = transactionManager;
+        this.timeout = timeout;
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = newExecutor(maxConcurrency);
+    }
+
+    public Scope open() {
+        return new Scope(timeout);
+    }
+
+    public Scope open(Duration timeout) {
+        return new Scope(timeout);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService newExecutor(int maxConcurrency) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            log.info("parallel queries run on virtual threads");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new QueryThreadFactory());
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * 한 번에 기다릴 조회 묶음
+     *
+     * join 에서 마감 시간이 지나거나 하나라도 실패하면 남은 조회는 취소(인터럽트)한다.
+     * 트랜잭션 타임아웃도 마감 시간(+1초)으로 걸리므로 DB 에서 실행 중인 쿼리도 statement timeout 으로 끊긴다.
+     */
+    public class Scope {
+
+        private final long deadline;
+        private final TransactionTemplate tx;
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        private Scope(Duration timeout) {
+            this.deadline = System.nanoTime() + timeout.toNanos();
+            this.tx = new TransactionTemplate(transactionManager);
+            this.tx.setReadOnly(true);
+            //Hibernate 는 남은 시간을 초 단위로 내림해서 0 이면 바로 만료시키므로 1초 여유를 둔다.
+            this.tx.setTimeout((int) ((timeout.toMillis() + 999) / 1000) + 1);
+        }
+
+        public <T> Result<T> fork(Function<JPAQueryFactory, T> query) {
+            Future<T> future = executor.submit(() -> {
+                permits.acquire();
+                try {
+                    return tx.execute(status -> query.apply(queryFactory));
+                } finally {
+                    permits.release();
+                }
+            });
+            futures.add(future);
+            return new Result<>(future);
+        }
+
+        public void join() {
+            try {
+                for (Future<?> future : futures) {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+            } catch (TimeoutException e) {
+                cancelAll();
+                throw new QueryTimeoutException("parallel queries did not finish before the deadline");
+            } catch (ExecutionException e) {
+                cancelAll();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                cancelAll();
+                Thread.currentThread().interrupt();
+                throw new CancellationException("interrupted while waiting for parallel queries");
+            }
+        }
+
+        private void cancelAll() {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * join 이 정상적으로 끝난 뒤에 꺼낸다.
+     */
+    public static class Result<T> {
+
+        private final Future<T> future;
+
+        private Result(Future<T> future) {
+            this.future = future;
+        }
+
+        public T get() {
+            if (!future.isDone() || future.isCancelled()) {
+                throw new IllegalStateException("query is not completed, call Scope.join() first");
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class QueryThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "parallel-query-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
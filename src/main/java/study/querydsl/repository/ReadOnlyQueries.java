@@ -0,0 +1,73 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.AbstractJPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.function.Function;
+
+/**
+ * 집계/통계(aggregation, group, projectionTuple 같은) 조회 전용 실행 모드
+ *
+ * read: 읽기 전용 트랜잭션에서 실행한다. 조회한 엔티티는 읽기 전용이 되어 스냅샷(loadedState)을 만들지 않고
+ * 커밋 시 변경 감지/플러시도 하지 않는다. 커넥션도 readOnly 로 열리므로 ReplicaDataSourceConfig 를 켜면 복제본으로 간다.
+ * stateless: 같은 읽기 전용 커넥션으로 StatelessSession 을 열어 영속성 컨텍스트 없이 조회한다. 결과 엔티티는 처음부터 준영속이다.
+ * readOnly: 쓰기 트랜잭션 안에서 쿼리 하나만 읽기 전용으로 조회할 때 쓴다.
+ */
+@Repository
+public class ReadOnlyQueries {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+
+    public ReadOnlyQueries(EntityManager em, JPAQueryFactory queryFactory,
+                           PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * 이미 쓰기 트랜잭션이 있으면 그 트랜잭션에 참여하되, work 안에서 조회한 엔티티만 읽기 전용으로 만든다.
+     */
+    public <T> T read(Function<JPAQueryFactory, T> work) {
+        return readOnlyTx.execute(status -> {
+            Session session = em.unwrap(Session.class);
+            boolean defaultReadOnly = session.isDefaultReadOnly();
+            session.setDefaultReadOnly(true);
+            try {
+                return work.apply(queryFactory);
+            } finally {
+                session.setDefaultReadOnly(defaultReadOnly);
+            }
+        });
+    }
+
+    /**
+     * 쿼리는 new HibernateQuery&lt;Void&gt;(session).select(...) 로 만든다.
+     * StatelessSession 은 지연 로딩, 1차/2차 캐시, 배치 페치를 쓰지 않으므로 연관 엔티티는 페치 조인이나 프로젝션으로 조회해야 한다.
+     */
+    public <T> T stateless(Function<StatelessSession, T> work) {
+        return readOnlyTx.execute(status -> {
+            SessionImplementor session = em.unwrap(SessionImplementor.class);
+            try (StatelessSession statelessSession = session.getSessionFactory()
+                    .openStatelessSession(session.connection())) {
+                return work.apply(statelessSession);
+            }
+        });
+    }
+
+    public static <Q extends AbstractJPAQuery<?, Q>> Q readOnly(Q query) {
+        return query.setHint(QueryHints.READ_ONLY, true);
+    }
+
+}
@@ -0,0 +1,63 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 조회
+ *
+ * Team 은 2차 캐시(team 리전)에 올라가고, 아래 조회는 CACHEABLE 힌트로 쿼리 캐시를 사용한다.
+ * JPAQueryFactory 의 update/delete 벌크 연산은 Hibernate 가 영향받는 테이블의 엔티티/컬렉션 리전과
+ * 쿼리 캐시 타임스탬프를 무효화하므로 별도로 캐시를 지울 필요가 없다.
+ */
+@Repository
+public class TeamQueryRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    public TeamQueryRepository(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
+    }
+
+    public Team findByName(String name) {
+        return queryFactory
+                .selectFrom(team)
+                .where(team.name.eq(name))
+                .setHint(QueryHints.CACHEABLE, true)
+                .fetchFirst();
+    }
+
+    public List<Team> findAll() {
+        return queryFactory
+                .selectFrom(team)
+                .orderBy(team.name.asc())
+                .setHint(QueryHints.CACHEABLE, true)
+                .fetch();
+    }
+
+    /**
+     * 팀과 소속 회원을 함께 조회
+     *
+     * 컬렉션 페치 조인은 회원 수만큼 팀 행이 중복되고 페이징도 할 수 없으므로,
+     * 팀만 조회한 뒤 default_batch_fetch_size 로 회원 컬렉션을 IN 절로 묶어서 초기화한다.
+     * 쿼리 수는 1 + (팀 수 / 배치 크기) 로 고정된다.
+     */
+    @Transactional(readOnly = true)
+    public List<Team> findAllWithMembers() {
+        List<Team> teams = queryFactory
+                .selectFrom(team)
+                .orderBy(team.name.asc())
+                .fetch();
+        teams.forEach(t -> Hibernate.initialize(t.getMembers()));
+        return teams;
+    }
+
+}
@@ -0,0 +1,18 @@
+package study.querydsl.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import study.querydsl.entity.Team;
+
+import javax.persistence.QueryHint;
+import java.util.Optional;
+
+/**
+ * 팀 저장/조회, 이름 조회는 TeamQueryRepository 와 같이 쿼리 캐시를 사용한다.
+ */
+public interface TeamRepository extends JpaRepository<Team, Long> {
+
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
+    Optional<Team> findByName(String name);
+
+}
@@ -0,0 +1,14 @@
+package study.querydsl.repository;
+
+/**
+ * 정렬할 수 없는 속성으로 정렬을 요청함 (클라이언트 입력 오류, 컨트롤러에서 400)
+ */
+public class UnsupportedSortException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedSortException(String property) {
+        super("unsupported sort property: " + property);
+    }
+
+}
@@ -0,0 +1,62 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.JPAExpressions;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.DashboardDto;
+import study.querydsl.dto.TeamAgeDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.monitor.QueryMetrics;
+import study.querydsl.repository.ParallelQueries;
+import study.querydsl.stats.TeamStatsService;
+
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 대시보드 통계
+ *
+ * 회원 수, 팀별 평균 연령, 평균보다 나이가 많은 회원 수는 서로 독립적이므로 ParallelQueries 로 동시에 조회한다.
+ * 각 조회는 별도 트랜잭션이므로 이 서비스를 @Transactional 로 감싸지 않는다.
+ * 팀별 평균 연령은 회원 전체를 groupBy 하지 않고 team_stats 에서 팀당 한 행씩 읽는다.
+ */
+@Service
+public class DashboardService {
+
+    private final ParallelQueries parallelQueries;
+    private final QueryMetrics queryMetrics;
+    private final TeamStatsService teamStatsService;
+
+    public DashboardService(ParallelQueries parallelQueries, QueryMetrics queryMetrics,
+                            TeamStatsService teamStatsService) {
+        this.parallelQueries = parallelQueries;
+        this.queryMetrics = queryMetrics;
+        this.teamStatsService = teamStatsService;
+    }
+
+    public DashboardDto dashboard() {
+        ParallelQueries.Scope scope = parallelQueries.open();
+
+        ParallelQueries.Result<Long> memberCount = scope.fork(queryFactory -> queryMetrics.fetchOne(
+                "dashboard.memberCount", queryFactory
+                        .select(member.count())
+                        .from(member)));
+
+        ParallelQueries.Result<List<TeamAgeDto>> teamAges = scope.fork(queryFactory -> queryMetrics.record(
+                "dashboard.teamAges", teamStatsService::teamAges));
+
+        QMember memberSub = new QMember("memberSub");
+        ParallelQueries.Result<Long> olderThanAverage = scope.fork(queryFactory -> queryMetrics.fetchOne(
+                "dashboard.olderThanAverage", queryFactory
+                        .select(member.count())
+                        .from(member)
+                        .where(member.age.gt(
+                                JPAExpressions
+                                        .select(memberSub.age.avg())
+                                        .from(memberSub)))));
+
+        scope.join();
+        return new DashboardDto(memberCount.get(), teamAges.get(), olderThanAverage.get());
+    }
+
+}
@@ -0,0 +1,43 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 대량 회원 저장
+ *
+ * persist 를 batch_size 만큼 모은 뒤 flush 해서 JDBC 배치 INSERT 로 보내고,
+ * 바로 clear 해서 영속성 컨텍스트가 계속 커지지 않도록 한다.
+ */
+@Service
+@Transactional
+public class MemberBatchService {
+
+    private final EntityManager em;
+    private final int batchSize;
+
+    public MemberBatchService(EntityManager em,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.em = em;
+        this.batchSize = batchSize;
+    }
+
+    public int saveAll(Iterable<Member> members) {
+        int count = 0;
+        for (Member member : members) {
+            em.persist(member);
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+}
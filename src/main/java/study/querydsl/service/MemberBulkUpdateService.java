@@ -0,0 +1,141 @@
+package study.querydsl.service;
+
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberUpdateDto;
+import study.querydsl.entity.Member;
+import study.querydsl.stats.TeamStatsService;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원별로 서로 다른 값을 한 번에 변경
+ *
+ * 변경 요청을 chunk-size 단위로 나누고, 청크마다 같은 값을 가진 회원끼리 묶어서
+ * UPDATE member SET age = CASE WHEN id IN (...) THEN ? ... ELSE age END WHERE id IN (...)
+ * 한 문장으로 실행한다. 요청 건수만큼 update 를 날리는 대신 청크 수만큼만 실행된다.
+ *
+ * 벌크 연산은 영속성 컨텍스트를 거치지 않으므로 실행 전에 flush 하고,
+ * 실행 후에는 이미 영속 상태인 회원만 refresh 해서 DB 값과 맞춘다. (em.clear() 로 전부 버리지 않는다)
+ * 나이가 바뀐 회원이 속한 팀의 집계(team_stats)는 마지막에 한 번 다시 계산한다.
+ */
+@Service
+@Transactional
+public class MemberBulkUpdateService {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TeamStatsService teamStatsService;
+    private final int chunkSize;
+
+    public MemberBulkUpdateService(EntityManager em, JPAQueryFactory queryFactory, TeamStatsService teamStatsService,
+                                   @Value("${bulk.update.chunk-size:500}") int chunkSize) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.teamStatsService = teamStatsService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return 변경된 행 수
+     */
+    public long updateAll(List<MemberUpdateDto> updates) {
+        em.flush();
+
+        long affected = 0;
+        Set<Long> teamIds = new LinkedHashSet<>();
+        for (int from = 0; from < updates.size(); from += chunkSize) {
+            List<MemberUpdateDto> chunk = updates.subList(from, Math.min(from + chunkSize, updates.size()));
+            affected += updateChunk(chunk, teamIds);
+        }
+
+        refreshManaged(updates);
+        teamStatsService.recompute(teamIds);
+        return affected;
+    }
+
+    private long updateChunk(List<MemberUpdateDto> chunk, Set<Long> teamIds) {
+        Map<String, List<Long>> idsByUsername = new LinkedHashMap<>();
+        Map<Integer, List<Long>> idsByAge = new LinkedHashMap<>();
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (MemberUpdateDto update : chunk) {
+            if (update.getUsername() == null && update.getAge() == null) {
+                continue;
+            }
+            ids.add(update.getId());
+            if (update.getUsername() != null) {
+                idsByUsername.computeIfAbsent(update.getUsername(), k -> new ArrayList<>()).add(update.getId());
+            }
+            if (update.getAge() != null) {
+                idsByAge.computeIfAbsent(update.getAge(), k -> new ArrayList<>()).add(update.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        //벌크 update 는 @Version 을 올리지 않으므로 직접 올려서 이 사이에 읽어 간 엔티티의 변경이 충돌하도록 한다.
+        JPAUpdateClause update = queryFactory.update(member)
+                .set(member.version, member.version.add(1L));
+        if (!idsByUsername.isEmpty()) {
+            update.set(member.username, usernameCase(idsByUsername));
+        }
+        if (!idsByAge.isEmpty()) {
+            update.set(member.age, ageCase(idsByAge));
+            teamIds.addAll(queryFactory
+                    .selectDistinct(member.team.id)
+                    .from(member)
+                    .where(member.id.in(ids), member.team.isNotNull())
+                    .fetch());
+        }
+        return update.where(member.id.in(ids)).execute();
+    }
+
+    private StringExpression usernameCase(Map<String, List<Long>> idsByUsername) {
+        CaseBuilder.Cases<String, StringExpression> cases = null;
+        for (Map.Entry<String, List<Long>> entry : idsByUsername.entrySet()) {
+            cases = cases == null
+                    ? new CaseBuilder().when(member.id.in(entry.getValue())).then(entry.getKey())
+                    : cases.when(member.id.in(entry.getValue())).then(entry.getKey());
+        }
+        return cases.otherwise(member.username);
+    }
+
+    private NumberExpression<Integer> ageCase(Map<Integer, List<Long>> idsByAge) {
+        CaseBuilder.Cases<Integer, NumberExpression<Integer>> cases = null;
+        for (Map.Entry<Integer, List<Long>> entry : idsByAge.entrySet()) {
+            cases = cases == null
+                    ? new CaseBuilder().when(member.id.in(entry.getValue())).then(entry.getKey())
+                    : cases.when(member.id.in(entry.getValue())).then(entry.getKey());
+        }
+        return cases.otherwise(member.age);
+    }
+
+    private void refreshManaged(List<MemberUpdateDto> updates) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        for (MemberUpdateDto update : updates) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(update.getId(), persister));
+            if (managed != null) {
+                em.refresh(managed);
+            }
+        }
+    }
+
+}
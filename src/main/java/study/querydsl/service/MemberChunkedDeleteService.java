@@ -0,0 +1,162 @@
+package study.querydsl.service;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.ChunkProgress;
+import study.querydsl.entity.BulkJobCheckpoint;
+import study.querydsl.stats.TeamStatsService;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 조건에 맞는 회원을 ID 순서로 chunkSize 건씩 나눠서 삭제
+ *
+ * delete ... where age > 18 한 문장은 대상 전체에 락을 오래 잡고 언두 로그를 한 번에 채우므로,
+ * 청크마다 별도 트랜잭션으로 커밋하고 필요하면 청크 사이에 쉬어서(throttle) 다른 트랜잭션에 자리를 내준다.
+ *
+ * 청크를 지울 때 같은 트랜잭션에서 BulkJobCheckpoint 에 마지막 ID 를 기록하므로,
+ * 실패 후 같은 jobName 과 조건으로 다시 호출하면 그 다음 ID 부터 이어서 지운다. 끝나면 체크포인트를 지운다.
+ * 같은 jobName 의 체크포인트가 다른 조건(또는 다른 종류의 작업)으로 만들어졌으면 IllegalStateException.
+ *
+ * 청크마다 새 트랜잭션(영속성 컨텍스트)을 쓰므로 호출하는 쪽 트랜잭션 밖에서 실행해야 한다.
+ * 벌크 delete 는 Hibernate 가 member 테이블과 관련된 2차 캐시 리전(Team.members)과 쿼리 캐시를 무효화한다.
+ * 엔티티 이벤트가 없으므로 청크에 포함된 팀의 집계(team_stats)는 같은 트랜잭션에서 다시 계산한다.
+ *
+ * 삭제 문장에도 조건을 다시 붙이므로 조건은 벌크 delete 에 쓸 수 있는 형태여야 한다. (member 의 컬럼과 member.team.id 만, 조인 없이)
+ * ID 를 고른 뒤 지우기 전에 다른 트랜잭션이 회원의 팀을 바꾼 경우 새 팀의 집계는 TeamStatsReconcileJob 이 맞춘다.
+ */
+@Slf4j
+@Service
+public class MemberChunkedDeleteService {
+
+    static final String JOB_TYPE = "member-delete";
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TeamStatsService teamStatsService;
+    private final TransactionTemplate chunkTx;
+
+    public MemberChunkedDeleteService(EntityManager em, JPAQueryFactory queryFactory,
+                                      TeamStatsService teamStatsService,
+                                      PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.teamStatsService = teamStatsService;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public ChunkProgress delete(String jobName, Predicate condition, int chunkSize, Duration pause) {
+        return delete(jobName, condition, chunkSize, pause, progress -> {
+        });
+    }
+
+    /**
+     * @param pause    청크 사이 대기 시간, Duration.ZERO 면 쉬지 않는다.
+     * @param listener 청크를 커밋할 때마다 진행 상황을 받는다.
+     */
+    public ChunkProgress delete(String jobName, Predicate condition, int chunkSize, Duration pause,
+                                Consumer<ChunkProgress> listener) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+
+        String signature = BulkJobCheckpoint.signature(JOB_TYPE, condition);
+        BulkJobCheckpoint resumed = chunkTx.execute(status -> em.find(BulkJobCheckpoint.class, jobName));
+        if (resumed != null) {
+            resumed.verify(signature);
+        }
+        long previouslyProcessed = resumed == null ? 0 : resumed.getProcessedCount();
+
+        long start = System.nanoTime();
+        ChunkProgress progress = new ChunkProgress(jobName, 0, previouslyProcessed, 0,
+                resumed == null ? 0 : resumed.getPosition(), 0, false);
+        while (true) {
+            BulkJobCheckpoint checkpoint = chunkTx.execute(status -> deleteChunk(jobName, signature, condition, chunkSize));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            if (checkpoint == null) {
+                ChunkProgress done = new ChunkProgress(jobName, progress.getChunks(), progress.getProcessedCount(),
+                        progress.getRunProcessedCount(), progress.getPosition(), elapsedMillis, true);
+                log.info("chunked delete finished: {}", done);
+                return done;
+            }
+
+            progress = new ChunkProgress(jobName, progress.getChunks() + 1, checkpoint.getProcessedCount(),
+                    checkpoint.getProcessedCount() - previouslyProcessed, checkpoint.getPosition(), elapsedMillis, false);
+            log.debug("chunked delete progress: {}", progress);
+            listener.accept(progress);
+
+            if (!pause.isZero() && !sleep(pause)) {
+                return progress;
+            }
+        }
+    }
+
+    /**
+     * @return 이번 청크를 반영한 체크포인트, 더 지울 행이 없으면 체크포인트를 지우고 null
+     */
+    private BulkJobCheckpoint deleteChunk(String jobName, String signature, Predicate condition, int chunkSize) {
+        BulkJobCheckpoint checkpoint = em.find(BulkJobCheckpoint.class, jobName);
+        if (checkpoint == null) {
+            checkpoint = new BulkJobCheckpoint(jobName, signature);
+            em.persist(checkpoint);
+        } else {
+            checkpoint.verify(signature);
+        }
+
+        List<Long> ids = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(condition, member.id.gt(checkpoint.getPosition()))
+                .orderBy(member.id.asc())
+                .limit(chunkSize)
+                .fetch();
+        if (ids.isEmpty()) {
+            em.remove(checkpoint);
+            return null;
+        }
+
+        List<Long> teamIds = queryFactory
+                .selectDistinct(member.team.id)
+                .from(member)
+                .where(member.id.in(ids), condition, member.team.isNotNull())
+                .fetch();
+        long deleted = deleteSelected(ids, condition);
+        teamStatsService.recompute(teamIds);
+        checkpoint.advance(ids.get(ids.size() - 1), deleted);
+        return checkpoint;
+    }
+
+    /**
+     * 고른 ID 중 지금도 조건에 맞는 행만 지운다.
+     * ID 를 고른 뒤 다른 트랜잭션이 나이/팀을 바꿔서 조건에서 빠진 행은 남는다.
+     */
+    long deleteSelected(List<Long> ids, Predicate condition) {
+        return queryFactory
+                .delete(member)
+                .where(member.id.in(ids), condition)
+                .execute();
+    }
+
+    private boolean sleep(Duration pause) {
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("chunked delete interrupted, resume with the same job name");
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+package study.querydsl.service;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.QueryResultCache;
+import study.querydsl.dto.ChunkProgress;
+import study.querydsl.entity.BulkJobCheckpoint;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.stats.TeamStatsService;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * CSV(username,age,teamName) 파일의 회원을 JDBC 배치 INSERT 로 적재
+ *
+ * 파싱 스레드가 파일을 batchSize 행씩 묶어 크기가 정해진 큐(queue-capacity)에 넣고, 호출한 스레드가 꺼내서 쓴다.
+ * 쓰기가 밀리면 큐가 차서 파싱이 멈추므로 메모리에 올라가는 행 수는 batchSize * (queue-capacity + 2) 를 넘지 않는다.
+ *
+ * 배치마다 별도 트랜잭션에서 영속성 컨텍스트를 거치지 않고 PreparedStatement.addBatch 로 넣는다.
+ * 회원 ID 는 Member 의 시퀀스 생성기(pooled)에서 받으므로 JPA 로 저장하는 회원과 겹치지 않는다.
+ * 팀 이름은 시작할 때 읽은 팀 목록으로 ID 를 찾고, 없는 팀은 파싱 중에 만든다.
+ *
+ * 배치를 넣은 트랜잭션에서 BulkJobCheckpoint 에 다음 줄의 파일 위치와 팀 집계 증감분을 함께 반영하므로,
+ * 실패 후 같은 jobName 으로 다시 호출하면 마지막으로 커밋된 배치 다음 줄부터 이어서 넣는다. 끝나면 체크포인트를 지운다.
+ * 체크포인트에 파일 경로/크기/수정 시각을 함께 남기므로, 그 사이 파일이 바뀌었거나 다른 작업의 jobName 이면 IllegalStateException.
+ *
+ * 배치마다 새 트랜잭션을 쓰므로 호출하는 쪽 트랜잭션 밖에서 실행해야 한다.
+ */
+@Slf4j
+@Service
+public class MemberCsvImportService {
+
+    static final String JOB_TYPE = "member-import";
+
+    static final String INSERT_MEMBER =
+            "insert into member (member_id, username, age, team_id, version) values (?, ?, ?, ?, 0)";
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TeamStatsService teamStatsService;
+    private final QueryResultCache queryResultCache;
+    private final TransactionTemplate chunkTx;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public MemberCsvImportService(EntityManager em, JPAQueryFactory queryFactory,
+                                  TeamStatsService teamStatsService, QueryResultCache queryResultCache,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${bulk.import.batch-size:1000}") int batchSize,
+                                  @Value("${bulk.import.queue-capacity:4}") int queueCapacity) {
+        if (batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("batchSize and queueCapacity must be positive");
+        }
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.teamStatsService = teamStatsService;
+        this.queryResultCache = queryResultCache;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public ChunkProgress importCsv(String jobName, Path file) {
+        return importCsv(jobName, file, progress -> {
+        });
+    }
+
+    /**
+     * @param listener 배치를 커밋할 때마다 진행 상황을 받는다. position 은 다음에 읽을 파일 위치(바이트)다.
+     */
+    public ChunkProgress importCsv(String jobName, Path file, Consumer<ChunkProgress> listener) {
+        String signature = signature(file);
+        BulkJobCheckpoint resumed = chunkTx.execute(status -> em.find(BulkJobCheckpoint.class, jobName));
+        if (resumed != null) {
+            resumed.verify(signature);
+        }
+        long startPosition = resumed == null ? 0 : resumed.getPosition();
+        long previouslyProcessed = resumed == null ? 0 : resumed.getProcessedCount();
+        if (resumed != null) {
+            log.info("csv import resumed: {}", resumed);
+        }
+
+        BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Thread parser = new Thread(() -> parse(file, startPosition, queue), "csv-import-" + jobName);
+        parser.setDaemon(true);
+
+        long start = System.nanoTime();
+        ChunkProgress progress = new ChunkProgress(jobName, 0, previouslyProcessed, 0, startPosition, 0, false);
+        parser.start();
+        try {
+            while (true) {
+                RowBatch batch = queue.take();
+                if (batch.failure instanceof Error) {
+                    throw (Error) batch.failure;
+                }
+                if (batch.failure != null) {
+                    throw (RuntimeException) batch.failure;
+                }
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                if (batch.size == 0) {
+                    chunkTx.executeWithoutResult(status -> {
+                        BulkJobCheckpoint checkpoint = em.find(BulkJobCheckpoint.class, jobName);
+                        if (checkpoint != null) {
+                            em.remove(checkpoint);
+                        }
+                    });
+                    ChunkProgress done = new ChunkProgress(jobName, progress.getChunks(), progress.getProcessedCount(),
+                            progress.getRunProcessedCount(), progress.getPosition(), elapsedMillis, true);
+                    log.info("csv import finished: {}, {} rows/s", done, done.getRowsPerSecond());
+                    return done;
+                }
+
+                BulkJobCheckpoint checkpoint = chunkTx.execute(status -> write(jobName, signature, batch));
+                elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                progress = new ChunkProgress(jobName, progress.getChunks() + 1, checkpoint.getProcessedCount(),
+                        checkpoint.getProcessedCount() - previouslyProcessed, checkpoint.getPosition(), elapsedMillis, false);
+                log.debug("csv import progress: {}", progress);
+                listener.accept(progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("csv import interrupted, resume with the same job name");
+            return progress;
+        } finally {
+            //쓰기가 실패하면 큐에서 기다리는 파싱 스레드를 깨워서 끝낸다.
+            parser.interrupt();
+        }
+    }
+
+    /**
+     * 파싱 단계, 끝나면 빈 배치를, 실패하면 예외를 담은 배치를 넣는다.
+     */
+    private void parse(Path file, long startPosition, BlockingQueue<RowBatch> queue) {
+        try {
+            RowBatch last;
+            try (MemberCsvReader reader = new MemberCsvReader(file, startPosition, MemberCsvReader.DEFAULT_BUFFER_SIZE)) {
+                TeamIdIndex teams = loadTeams();
+                RowBatch batch = new RowBatch(batchSize);
+                while (reader.next()) {
+                    Long teamId = teams.resolve(reader.teamBytes(), reader.teamOffset(), reader.teamLength());
+                    batch.add(reader.username(), reader.age(), teamId, reader.position());
+                    if (batch.size == batchSize) {
+                        queue.put(batch);
+                        batch = new RowBatch(batchSize);
+                    }
+                }
+                if (batch.size > 0) {
+                    queue.put(batch);
+                }
+                last = new RowBatch(0);
+            } catch (IOException e) {
+                last = RowBatch.failed(new UncheckedIOException(e));
+            } catch (RuntimeException | Error e) {
+                last = RowBatch.failed(e);
+            }
+            queue.put(last);
+        } catch (InterruptedException e) {
+            log.debug("csv import parser stopped");
+        }
+    }
+
+    private TeamIdIndex loadTeams() {
+        TeamIdIndex teams = new TeamIdIndex(this::findOrCreateTeam);
+        for (Tuple row : queryFactory.select(team.id, team.name).from(team).orderBy(team.id.asc()).fetch()) {
+            if (row.get(team.name) != null) {
+                teams.put(row.get(team.name), row.get(team.id));
+            }
+        }
+        return teams;
+    }
+
+    private Long findOrCreateTeam(String name) {
+        return chunkTx.execute(status -> {
+            Long id = queryFactory.select(team.id).from(team).where(team.name.eq(name)).fetchFirst();
+            if (id != null) {
+                return id;
+            }
+            Team created = new Team(name);
+            em.persist(created);
+            log.info("csv import created team: {}", name);
+            return created.getId();
+        });
+    }
+
+    private BulkJobCheckpoint write(String jobName, String signature, RowBatch batch) {
+        BulkJobCheckpoint checkpoint = em.find(BulkJobCheckpoint.class, jobName);
+        if (checkpoint == null) {
+            checkpoint = new BulkJobCheckpoint(jobName, signature);
+            em.persist(checkpoint);
+        }
+
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        IdentifierGenerator generator = session.getFactory().getMetamodel()
+                .entityPersister(Member.class).getIdentifierGenerator();
+        long[] ids = new long[batch.size];
+        for (int i = 0; i < batch.size; i++) {
+            ids[i] = ((Number) generator.generate(session, null)).longValue();
+        }
+
+        Map<Long, IntSummaryStatistics> agesByTeam = new HashMap<>();
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_MEMBER)) {
+                for (int i = 0; i < batch.size; i++) {
+                    ps.setLong(1, ids[i]);
+                    ps.setString(2, batch.usernames[i]);
+                    ps.setInt(3, batch.ages[i]);
+                    if (batch.teamIds[i] == null) {
+                        ps.setNull(4, Types.BIGINT);
+                    } else {
+                        ps.setLong(4, batch.teamIds[i]);
+                        agesByTeam.computeIfAbsent(batch.teamIds[i], k -> new IntSummaryStatistics())
+                                .accept(batch.ages[i]);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+
+        teamStatsService.membersInserted(agesByTeam);
+        queryResultCache.invalidate(Member.class);
+        checkpoint.advance(batch.endPosition, batch.size);
+        return checkpoint;
+    }
+
+    /**
+     * 같은 경로라도 내용이 바뀌었으면(크기, 수정 시각) 다른 작업으로 보고 이어서 넣지 않는다.
+     */
+    private static String signature(Path file) {
+        try {
+            return BulkJobCheckpoint.signature(JOB_TYPE, file.toAbsolutePath().normalize(),
+                    Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 파싱 단계에서 쓰기 단계로 넘기는 행 묶음, size 가 0 이면 끝
+     */
+    private static final class RowBatch {
+
+        private final String[] usernames;
+        private final int[] ages;
+        private final Long[] teamIds;
+        private int size;
+        /*마지막 행 다음 줄의 파일 위치*/
+        private long endPosition;
+        /*RuntimeException 또는 Error*/
+        private Throwable failure;
+
+        RowBatch(int capacity) {
+            this.usernames = new String[capacity];
+            this.ages = new int[capacity];
+            this.teamIds = new Long[capacity];
+        }
+
+        static RowBatch failed(Throwable failure) {
+            RowBatch batch = new RowBatch(0);
+            batch.failure = failure;
+            return batch;
+        }
+
+        void add(String username, int age, Long teamId, long position) {
+            usernames[size] = username;
+            ages[size] = age;
+            teamIds[size] = teamId;
+            size++;
+            endPosition = position;
+        }
+    }
+
+}
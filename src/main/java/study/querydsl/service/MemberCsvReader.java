@@ -0,0 +1,251 @@
+package study.querydsl.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 회원 CSV(username,age,teamName)를 한 줄씩 읽는다.
+ *
+ * FileChannel 로 버퍼 크기만큼 읽어서 바이트 배열 안에서 바로 구분자를 찾는다.
+ * 나이는 바이트에서 바로 int 로 바꾸고, 팀 이름은 String 을 만들지 않고 (배열, 위치, 길이)로 넘긴다.
+ * INSERT 파라미터로 넘겨야 하는 회원 이름만 String 으로 만든다.
+ *
+ * 큰따옴표로 감싼 필드(쉼표, 줄바꿈 없는 "" 이스케이프)를 지원하고, 파일 처음부터 읽을 때는 첫 줄을 헤더로 건너뛴다.
+ * position() 은 방금 읽은 줄 다음의 파일 위치이므로 그 위치에서 다시 열면 다음 줄부터 이어서 읽는다.
+ */
+class MemberCsvReader implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int FIELD_COUNT = 3;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    /*따옴표 안의 "" 를 풀어 쓴 필드를 담는 공간, 줄마다 처음부터 다시 쓴다*/
+    private final byte[] unquoted;
+    private int unquotedLength;
+
+    /*bytes[0] 의 파일 위치*/
+    private long bufferStart;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private final byte[][] fieldBytes = new byte[FIELD_COUNT][];
+    private final int[] fieldOffset = new int[FIELD_COUNT];
+    private final int[] fieldLength = new int[FIELD_COUNT];
+
+    private String username;
+    private int age;
+
+    MemberCsvReader(Path file, long startPosition, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.bytes = buffer.array();
+        this.unquoted = new byte[bufferSize];
+        this.bufferStart = startPosition;
+        channel.position(startPosition);
+        if (startPosition == 0) {
+            skipHeader();
+        }
+    }
+
+    /**
+     * @return 다음 행을 읽었으면 true, 파일 끝이면 false
+     */
+    boolean next() throws IOException {
+        while (true) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                return false;
+            }
+            int start = pos;
+            int end = lineEnd > start && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            long lineStart = bufferStart + start;
+            pos = Math.min(lineEnd + 1, limit);
+            if (end > start) {
+                parse(start, end, lineStart);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 방금 읽은 행 다음 줄의 파일 위치
+     */
+    long position() {
+        return bufferStart + pos;
+    }
+
+    String username() {
+        return username;
+    }
+
+    int age() {
+        return age;
+    }
+
+    byte[] teamBytes() {
+        return fieldBytes[2];
+    }
+
+    int teamOffset() {
+        return fieldOffset[2];
+    }
+
+    int teamLength() {
+        return fieldLength[2];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void skipHeader() throws IOException {
+        int lineEnd = findLineEnd();
+        if (lineEnd >= 0) {
+            pos = Math.min(lineEnd + 1, limit);
+        }
+    }
+
+    /**
+     * pos 부터 줄 끝('\n', 마지막 줄이면 limit)을 찾는다. 버퍼에 줄 끝이 없으면 남은 바이트를 앞으로 옮기고 더 읽는다.
+     *
+     * @return 줄 끝 인덱스, 더 읽을 줄이 없으면 -1
+     */
+    private int findLineEnd() throws IOException {
+        int scanFrom = pos;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    return i;
+                }
+            }
+            if (eof) {
+                return pos < limit ? limit : -1;
+            }
+            if (pos == 0 && limit == bytes.length) {
+                throw new IllegalArgumentException("line longer than " + bytes.length + " bytes at offset " + bufferStart);
+            }
+            scanFrom = limit - pos;
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        int remaining = limit - pos;
+        System.arraycopy(bytes, pos, bytes, 0, remaining);
+        bufferStart += pos;
+        pos = 0;
+        limit = remaining;
+
+        buffer.clear();
+        buffer.position(limit);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                eof = true;
+                break;
+            }
+        }
+        limit = buffer.position();
+    }
+
+    private void parse(int start, int end, long lineStart) {
+        unquotedLength = 0;
+        int from = start;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (from > end) {
+                throw new IllegalArgumentException("expected " + FIELD_COUNT + " fields at offset " + lineStart);
+            }
+            from = field(field, from, end, lineStart) + 1;
+        }
+        if (from <= end) {
+            throw new IllegalArgumentException("too many fields at offset " + lineStart);
+        }
+
+        username = new String(fieldBytes[0], fieldOffset[0], fieldLength[0], StandardCharsets.UTF_8);
+        age = parseAge(lineStart);
+    }
+
+    /**
+     * @return 필드 다음 쉼표(또는 줄 끝) 인덱스
+     */
+    private int field(int field, int from, int end, long lineStart) {
+        if (from == end || bytes[from] != '"') {
+            int i = from;
+            while (i < end && bytes[i] != ',') {
+                i++;
+            }
+            fieldBytes[field] = bytes;
+            fieldOffset[field] = from;
+            fieldLength[field] = i - from;
+            return i;
+        }
+
+        int i = from + 1;
+        int contentStart = i;
+        boolean escaped = false;
+        while (true) {
+            if (i >= end) {
+                throw new IllegalArgumentException("unterminated quote at offset " + lineStart);
+            }
+            if (bytes[i] == '"') {
+                if (i + 1 < end && bytes[i + 1] == '"') {
+                    escaped = true;
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            i++;
+        }
+        int closing = i;
+        if (closing + 1 < end && bytes[closing + 1] != ',') {
+            throw new IllegalArgumentException("unexpected character after quote at offset " + lineStart);
+        }
+
+        if (!escaped) {
+            fieldBytes[field] = bytes;
+            fieldOffset[field] = contentStart;
+            fieldLength[field] = closing - contentStart;
+        } else {
+            int offset = unquotedLength;
+            for (int j = contentStart; j < closing; j++) {
+                unquoted[unquotedLength++] = bytes[j];
+                if (bytes[j] == '"') {
+                    j++;
+                }
+            }
+            fieldBytes[field] = unquoted;
+            fieldOffset[field] = offset;
+            fieldLength[field] = unquotedLength - offset;
+        }
+        return closing + 1;
+    }
+
+    private int parseAge(long lineStart) {
+        byte[] b = fieldBytes[1];
+        int offset = fieldOffset[1];
+        int length = fieldLength[1];
+        if (length == 0 || length > 9) {
+            throw new IllegalArgumentException("invalid age at offset " + lineStart);
+        }
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("invalid age at offset " + lineStart);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+}
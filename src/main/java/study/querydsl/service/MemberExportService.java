@@ -0,0 +1,57 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.repository.MemberQueryRepository;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 회원 전체를 NDJSON(한 줄에 JSON 하나)으로 내보낸다.
+ *
+ * DB 커서에서 fetchSize 단위로 읽은 행을 바로 응답 스트림에 쓰므로 회원 수와 상관없이 메모리가 일정하다.
+ * flushRows 건마다 flush 해서 클라이언트가 전체 조회가 끝나기 전에 받기 시작한다.
+ */
+@Service
+public class MemberExportService {
+
+    private static final int FETCH_SIZE = 500;
+    private static final int FLUSH_ROWS = 1000;
+
+    private final MemberQueryRepository memberQueryRepository;
+    private final ObjectWriter writer;
+
+    public MemberExportService(MemberQueryRepository memberQueryRepository, ObjectMapper objectMapper) {
+        this.memberQueryRepository = memberQueryRepository;
+        this.writer = objectMapper.writerFor(MemberDto.class);
+    }
+
+    /**
+     * @return 내보낸 회원 수
+     */
+    @Transactional(readOnly = true)
+    public long writeNdjson(OutputStream outputStream) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(outputStream);
+        long rows = 0;
+        try (Stream<MemberDto> members = memberQueryRepository.streamMemberDto(FETCH_SIZE)) {
+            Iterator<MemberDto> iterator = members.iterator();
+            while (iterator.hasNext()) {
+                out.write(writer.writeValueAsBytes(iterator.next()));
+                out.write('\n');
+                if (++rows % FLUSH_ROWS == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
+        return rows;
+    }
+
+}
@@ -0,0 +1,96 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Service;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import java.util.Collection;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 단건 변경
+ *
+ * 행 락(select ... for update) 없이 읽고 고친 뒤 커밋할 때 @Version 으로 충돌을 확인한다.
+ * 다른 요청이 먼저 커밋했으면 OptimisticRetryExecutor 가 최신 값을 다시 읽어서 같은 변경을 다시 적용하므로
+ * 나중 요청이 앞선 변경을 덮어쓰지 않는다.
+ *
+ * 팀 이동은 Member.changeTeam 으로 하고, 초기화되지 않은 Team.members 는 읽지도 고치지도 않는다.
+ * DB 에는 연관관계 주인인 member.team_id 만 바뀌므로 여러 회원을 옮겨도 UPDATE 는 JDBC 배치로 나간다.
+ * 옮긴 회원은 flush 후에 읽은 팀 컬렉션에만 보이므로 같은 트랜잭션에서 팀 컬렉션을 읽으려면 먼저 flush 해야 한다.
+ */
+@Service
+public class MemberUpdateService {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final OptimisticRetryExecutor retryExecutor;
+
+    public MemberUpdateService(EntityManager em, JPAQueryFactory queryFactory, OptimisticRetryExecutor retryExecutor) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.retryExecutor = retryExecutor;
+    }
+
+    /**
+     * @return 변경된 나이
+     */
+    public int addAge(Long memberId, int delta) {
+        return retryExecutor.execute(status -> {
+            Member m = find(memberId);
+            m.setAge(m.getAge() + delta);
+            return m.getAge();
+        });
+    }
+
+    public void changeTeam(Long memberId, Long teamId) {
+        retryExecutor.execute(status -> {
+            Team team = em.find(Team.class, teamId);
+            if (team == null) {
+                throw new EntityNotFoundException("team not found: " + teamId);
+            }
+            find(memberId).changeTeam(team);
+            return null;
+        });
+    }
+
+    /**
+     * 여러 회원을 한 팀으로 옮긴다. 회원은 IN 한 번으로 읽고, 이전/새 팀의 회원 컬렉션은 읽지 않는다.
+     * 회원 수와 관계없이 flush 는 커밋 때 한 번이라 team_stats 도 팀당 한 문장만 실행된다.
+     *
+     * @return 옮긴 회원 수 (이미 그 팀이면 세지 않는다)
+     */
+    public int moveToTeam(Collection<Long> memberIds, Long teamId) {
+        return retryExecutor.execute(status -> {
+            Team team = em.find(Team.class, teamId);
+            if (team == null) {
+                throw new EntityNotFoundException("team not found: " + teamId);
+            }
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .where(member.id.in(memberIds))
+                    .fetch();
+            int moved = 0;
+            for (Member m : members) {
+                if (m.getTeam() != team) {
+                    m.changeTeam(team);
+                    moved++;
+                }
+            }
+            return moved;
+        });
+    }
+
+    private Member find(Long memberId) {
+        Member m = em.find(Member.class, memberId);
+        if (m == null) {
+            throw new EntityNotFoundException("member not found: " + memberId);
+        }
+        return m;
+    }
+
+}
@@ -0,0 +1,115 @@
+package study.querydsl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.StaleStateException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.OptimisticLockException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 낙관적 락 충돌이 나면 쓰기 트랜잭션을 처음부터 다시 실행
+ *
+ * 시도마다 새 트랜잭션(영속성 컨텍스트)에서 실행하므로 콜백 안에서 엔티티를 다시 읽어야 한다.
+ * 밖에서 읽은 엔티티를 넘기면 같은 버전으로 계속 충돌한다.
+ *
+ * 재시도 간격은 initial-backoff 부터 두 배씩 늘리되 max-backoff 를 넘지 않고,
+ * 그 범위 안에서 무작위로(full jitter) 쉬어서 충돌한 트랜잭션들이 다시 동시에 몰리지 않게 한다.
+ */
+@Slf4j
+@Component
+public class OptimisticRetryExecutor {
+
+    private final TransactionTemplate tx;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager,
+                                   @Value("${retry.optimistic.max-attempts:10}") int maxAttempts,
+                                   @Value("${retry.optimistic.initial-backoff:5ms}") Duration initialBackoff,
+                                   @Value("${retry.optimistic.max-backoff:200ms}") Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    /**
+     * @throws OptimisticLockingFailureException max-attempts 번 모두 충돌하면 마지막 예외
+     */
+    public <T> T execute(TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tx.execute(action);
+            } catch (RuntimeException e) {
+                if (!isOptimisticLockFailure(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    exhaustedCount.increment();
+                    log.warn("optimistic lock conflict after {} attempts", attempt);
+                    throw e;
+                }
+                retryCount.increment();
+                log.debug("optimistic lock conflict, retry {}/{}", attempt, maxAttempts - 1);
+                if (!backoff(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public long getExhaustedCount() {
+        return exhaustedCount.sum();
+    }
+
+    /**
+     * 커밋 시점 충돌은 스프링 예외로 변환되고, 콜백 안의 flush 충돌은 JPA/Hibernate 예외 그대로 올라온다.
+     */
+    static boolean isOptimisticLockFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockingFailureException
+                    || t instanceof OptimisticLockException
+                    || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean backoff(int attempt) {
+        long cap = initialBackoffNanos << Math.min(attempt - 1, 20);
+        if (cap <= 0 || cap > maxBackoffNanos) {
+            cap = maxBackoffNanos;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package study.querydsl.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 팀 이름 -> 팀 ID (파싱 스레드 전용)
+ *
+ * CSV 버퍼의 바이트 조각을 그대로 조회 키로 써서 행마다 팀 이름 String 을 만들지 않는다.
+ * 처음 보는 이름만 String 으로 바꿔 loader 로 찾거나 만들고, 키를 복사해서 보관한다.
+ */
+class TeamIdIndex {
+
+    private final Map<Key, Long> ids = new HashMap<>();
+    private final Key probe = new Key();
+    private final Function<String, Long> loader;
+
+    TeamIdIndex(Function<String, Long> loader) {
+        this.loader = loader;
+    }
+
+    void put(String name, Long id) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ids.putIfAbsent(new Key().set(bytes, 0, bytes.length), id);
+    }
+
+    /**
+     * @return 팀 ID, 이름이 비어 있으면 null
+     */
+    Long resolve(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return null;
+        }
+        Long id = ids.get(probe.set(bytes, offset, length));
+        if (id == null) {
+            id = loader.apply(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, offset, copy, 0, length);
+            ids.put(new Key().set(copy, 0, length), id);
+        }
+        return id;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    private static final class Key {
+
+        private byte[] bytes;
+        private int offset;
+        private int length;
+        private int hash;
+
+        Key set(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = 31 * h + bytes[i];
+            }
+            this.hash = h;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (hash != other.hash || length != other.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[offset + i] != other.bytes[other.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
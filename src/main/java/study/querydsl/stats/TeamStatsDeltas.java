@@ -0,0 +1,103 @@
+package study.querydsl.stats;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 한 번의 flush 동안 모은 팀별 증감분
+ *
+ * 회원 한 명마다 SQL 을 실행하지 않고 flush 가 끝날 때 팀당 한 문장으로 반영한다.
+ */
+class TeamStatsDeltas {
+
+    private final Set<Long> createdTeams = new LinkedHashSet<>();
+    private final Set<Long> deletedTeams = new LinkedHashSet<>();
+    private final Set<Long> recomputeTeams = new LinkedHashSet<>();
+    private final Map<Long, Delta> deltas = new LinkedHashMap<>();
+
+    void teamCreated(Long teamId) {
+        createdTeams.add(teamId);
+    }
+
+    void teamDeleted(Long teamId) {
+        deletedTeams.add(teamId);
+    }
+
+    void recompute(Long teamId) {
+        recomputeTeams.add(teamId);
+    }
+
+    void memberAdded(Long teamId, int age) {
+        Delta delta = deltas.computeIfAbsent(teamId, k -> new Delta());
+        delta.count++;
+        delta.sum += age;
+        delta.addedMin = delta.addedMin == null ? age : Math.min(delta.addedMin, age);
+        delta.addedMax = delta.addedMax == null ? age : Math.max(delta.addedMax, age);
+    }
+
+    void membersAdded(Long teamId, IntSummaryStatistics ages) {
+        Delta delta = deltas.computeIfAbsent(teamId, k -> new Delta());
+        delta.count += ages.getCount();
+        delta.sum += ages.getSum();
+        delta.addedMin = delta.addedMin == null ? ages.getMin() : Math.min(delta.addedMin, ages.getMin());
+        delta.addedMax = delta.addedMax == null ? ages.getMax() : Math.max(delta.addedMax, ages.getMax());
+    }
+
+    void memberRemoved(Long teamId, int age) {
+        Delta delta = deltas.computeIfAbsent(teamId, k -> new Delta());
+        delta.count--;
+        delta.sum -= age;
+        delta.removed = true;
+    }
+
+    boolean isEmpty() {
+        return createdTeams.isEmpty() && deletedTeams.isEmpty() && recomputeTeams.isEmpty() && deltas.isEmpty();
+    }
+
+    /**
+     * @return 갱신한 팀 ID
+     */
+    Set<Long> apply(Connection connection) throws SQLException {
+        Set<Long> touched = new LinkedHashSet<>();
+        TeamStatsSql.executeForEach(connection, TeamStatsSql.INSERT_EMPTY, createdTeams);
+        touched.addAll(createdTeams);
+
+        for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+            Long teamId = entry.getKey();
+            if (deletedTeams.contains(teamId) || recomputeTeams.contains(teamId)) {
+                continue;
+            }
+            if (TeamStatsSql.applyDelta(connection, teamId, entry.getValue()) == 0) {
+                //기능 도입 전에 만들어진 팀처럼 집계 행이 없으면 실제 값으로 만든다.
+                recomputeTeams.add(teamId);
+            }
+            touched.add(teamId);
+        }
+
+        recomputeTeams.removeAll(deletedTeams);
+        TeamStatsSql.recompute(connection, recomputeTeams);
+        TeamStatsSql.executeForEach(connection, TeamStatsSql.DELETE, deletedTeams);
+        touched.addAll(recomputeTeams);
+        touched.addAll(deletedTeams);
+
+        createdTeams.clear();
+        deletedTeams.clear();
+        recomputeTeams.clear();
+        deltas.clear();
+        return touched;
+    }
+
+    static class Delta {
+        long count;
+        long sum;
+        Integer addedMin;
+        Integer addedMax;
+        boolean removed;
+    }
+
+}
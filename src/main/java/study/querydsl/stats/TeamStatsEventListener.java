@@ -0,0 +1,159 @@
+package study.querydsl.stats;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 회원/팀 엔티티 변경을 team_stats 증감분으로 바꿔서 반영
+ *
+ * insert/update/delete 이벤트마다 세션별 TeamStatsDeltas 에 모아 두었다가
+ * flush 가 끝날 때 같은 커넥션(같은 트랜잭션)으로 팀당 한 문장씩 실행한다.
+ * 트랜잭션이 롤백되면 집계도 함께 롤백된다.
+ *
+ * JPQL 벌크 연산은 이벤트가 발생하지 않으므로 벌크를 실행하는 쪽에서 TeamStatsService.recompute 를 호출해야 한다.
+ */
+@Slf4j
+@Component
+public class TeamStatsEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final Map<SharedSessionContractImplementor, TeamStatsDeltas> pending = new ConcurrentHashMap<>();
+
+    public TeamStatsEventListener(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Team) {
+            deltas(event.getSession()).teamCreated((Long) event.getId());
+        } else if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Long teamId = teamId(persister, event.getState());
+            if (teamId != null) {
+                deltas(event.getSession()).memberAdded(teamId, age(persister, event.getState()));
+            }
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        Long newTeamId = teamId(persister, event.getState());
+        if (event.getOldState() == null) {
+            //merge 가 아닌 update(detached) 로 들어와 이전 값을 모르면 새 팀만 다시 계산한다. 이전 팀은 reconcile 이 맞춘다.
+            if (newTeamId != null) {
+                deltas(event.getSession()).recompute(newTeamId);
+            }
+            return;
+        }
+
+        Long oldTeamId = teamId(persister, event.getOldState());
+        int oldAge = age(persister, event.getOldState());
+        int newAge = age(persister, event.getState());
+        if (Objects.equals(oldTeamId, newTeamId) && oldAge == newAge) {
+            return;
+        }
+
+        TeamStatsDeltas deltas = deltas(event.getSession());
+        if (oldTeamId != null) {
+            deltas.memberRemoved(oldTeamId, oldAge);
+        }
+        if (newTeamId != null) {
+            deltas.memberAdded(newTeamId, newAge);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Team) {
+            deltas(event.getSession()).teamDeleted((Long) event.getId());
+        } else if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Long teamId = teamId(persister, event.getDeletedState());
+            if (teamId != null) {
+                deltas(event.getSession()).memberRemoved(teamId, age(persister, event.getDeletedState()));
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * 세션마다 한 번만 flush 종료 리스너를 붙이고, 세션이 닫히면 버린다.
+     */
+    private TeamStatsDeltas deltas(SessionImplementor session) {
+        return pending.computeIfAbsent(session, s -> {
+            TeamStatsDeltas deltas = new TeamStatsDeltas();
+            session.getEventListenerManager().addListener(new BaseSessionEventListener() {
+                @Override
+                public void flushEnd(int numberOfEntities, int numberOfCollections) {
+                    apply(session, deltas);
+                }
+
+                @Override
+                public void end() {
+                    pending.remove(session);
+                }
+            });
+            return deltas;
+        });
+    }
+
+    private void apply(SessionImplementor session, TeamStatsDeltas deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Set<Long> touched = session.doReturningWork(deltas::apply);
+        TeamStatsService.detach(session, touched);
+        log.debug("team stats updated: {}", touched);
+    }
+
+    private static Long teamId(EntityPersister persister, Object[] state) {
+        Team team = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        return team == null ? null : team.getId();
+    }
+
+    private static int age(EntityPersister persister, Object[] state) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+
+}
@@ -0,0 +1,26 @@
+package study.querydsl.stats;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * team_stats 정기 점검
+ *
+ * team-stats.reconcile-cron 을 설정하면 그 주기로 실제 회원 집계와 비교하고 어긋난 팀을 다시 계산한다.
+ * 설정하지 않으면 실행하지 않는다.
+ */
+@Component
+public class TeamStatsReconcileJob {
+
+    private final TeamStatsService teamStatsService;
+
+    public TeamStatsReconcileJob(TeamStatsService teamStatsService) {
+        this.teamStatsService = teamStatsService;
+    }
+
+    @Scheduled(cron = "${team-stats.reconcile-cron:-}")
+    public void reconcile() {
+        teamStatsService.reconcile(true);
+    }
+
+}
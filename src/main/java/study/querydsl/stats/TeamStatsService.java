@@ -0,0 +1,215 @@
+package study.querydsl.stats;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamAgeDto;
+import study.querydsl.dto.TeamStatsReconciliation;
+import study.querydsl.entity.TeamStats;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+/**
+ * 팀 집계(team_stats) 조회와 재계산
+ *
+ * 팀별 평균/최소/최대 연령을 회원 전체를 조인해서 groupBy 하는 대신 팀당 한 행을 읽는다.
+ * 평소에는 TeamStatsEventListener 가 증감분으로 갱신하고, 벌크 연산 뒤에는 recompute,
+ * 어긋났는지 확인할 때는 reconcile 을 사용한다.
+ *
+ * 같은 트랜잭션에서 아직 flush 되지 않은 회원 변경은 집계에 반영되지 않는다.
+ */
+@Slf4j
+@Service
+@Transactional
+public class TeamStatsService {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public TeamStatsService(EntityManager em, JPAQueryFactory queryFactory) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+    }
+
+    /**
+     * 회원이 있는 팀의 이름과 평균 연령, 팀 이름 순
+     */
+    @Transactional(readOnly = true)
+    public List<TeamAgeDto> teamAges() {
+        List<Tuple> rows = queryFactory
+                .select(team.name, teamStats.ageSum, teamStats.memberCount)
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .where(teamStats.memberCount.gt(0))
+                .orderBy(team.name.asc())
+                .fetch();
+        return rows.stream()
+                .map(row -> new TeamAgeDto(row.get(team.name),
+                        (double) row.get(teamStats.ageSum) / row.get(teamStats.memberCount)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 회원이 빠져서 min/max 가 어긋났을 수 있는 팀은 그 팀의 범위만 다시 계산해서 돌려준다.
+     */
+    public TeamStats findByTeamId(Long teamId) {
+        TeamStats stats = em.find(TeamStats.class, teamId);
+        if (stats != null && stats.isRangeStale()) {
+            em.unwrap(SessionImplementor.class).doWork(connection ->
+                    TeamStatsSql.executeForEach(connection, TeamStatsSql.REFRESH_RANGE, Arrays.asList(teamId)));
+            em.refresh(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * JPQL 벌크 update/delete 처럼 이벤트가 발생하지 않는 변경 뒤에 해당 팀을 실제 회원 집계로 다시 만든다.
+     */
+    public void recompute(Collection<Long> teamIds) {
+        if (teamIds.isEmpty()) {
+            return;
+        }
+        em.flush();
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        session.doWork(connection -> TeamStatsSql.recompute(connection, teamIds));
+        detach(session, teamIds);
+    }
+
+    /**
+     * 엔티티를 거치지 않고 JDBC 로 넣은 회원을 팀별 증감분으로 반영한다.
+     * recompute 와 달리 팀의 회원 전체를 다시 읽지 않으므로 대량 적재 중 청크마다 호출해도 된다.
+     *
+     * @param agesByTeam 팀 ID -> 이번에 넣은 회원 연령 통계
+     */
+    public void membersInserted(Map<Long, IntSummaryStatistics> agesByTeam) {
+        if (agesByTeam.isEmpty()) {
+            return;
+        }
+        TeamStatsDeltas deltas = new TeamStatsDeltas();
+        agesByTeam.forEach(deltas::membersAdded);
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        Set<Long> touched = session.doReturningWork(deltas::apply);
+        detach(session, touched);
+    }
+
+    /**
+     * team_stats 전체를 다시 만든다.
+     */
+    public void rebuild() {
+        em.flush();
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        session.doWork(TeamStatsSql::rebuild);
+        detachAll(session);
+        log.info("team stats rebuilt");
+    }
+
+    /**
+     * 저장된 집계를 실제 회원 집계와 비교한다.
+     * min/max 는 range_stale 이 아닌 행만 비교한다.
+     *
+     * @param repair 어긋난 팀을 다시 계산할지 여부
+     */
+    public TeamStatsReconciliation reconcile(boolean repair) {
+        em.flush();
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        TeamStatsReconciliation result = session.doReturningWork(connection -> {
+            Map<Long, long[]> stored = read(connection, TeamStatsSql.SELECT_ALL, true);
+            Map<Long, long[]> live = read(connection, TeamStatsSql.LIVE_AGGREGATE + " group by t.team_id", false);
+
+            List<Long> mismatched = new ArrayList<>();
+            for (Map.Entry<Long, long[]> entry : live.entrySet()) {
+                if (!matches(stored.remove(entry.getKey()), entry.getValue())) {
+                    mismatched.add(entry.getKey());
+                }
+            }
+            //팀이 벌크로 지워지고 남은 집계 행
+            mismatched.addAll(stored.keySet());
+
+            if (repair) {
+                TeamStatsSql.recompute(connection, mismatched);
+            }
+            return new TeamStatsReconciliation(live.size(), mismatched, repair);
+        });
+
+        if (result.isConsistent()) {
+            log.info("team stats consistent: {} teams", result.getCheckedTeams());
+        } else {
+            log.warn("team stats mismatch: {}", result);
+            if (repair) {
+                detach(session, result.getMismatchedTeamIds());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 네이티브 SQL 로 바뀐 집계 행이 영속성 컨텍스트에 남아 있으면 다음 조회에서 다시 읽도록 분리한다.
+     */
+    static void detach(SessionImplementor session, Collection<Long> teamIds) {
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(TeamStats.class);
+        for (Long teamId : teamIds) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(teamId, persister));
+            if (managed != null) {
+                session.evict(managed);
+            }
+        }
+    }
+
+    private static void detachAll(SessionImplementor session) {
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (entry.getKey() instanceof TeamStats) {
+                session.evict(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return 팀 ID -> {member_count, age_sum, min_age, max_age, range_stale}, null 은 -1
+     */
+    private static Map<Long, long[]> read(Connection connection, String sql, boolean withStale) throws SQLException {
+        Map<Long, long[]> result = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long[] values = new long[5];
+                for (int i = 0; i < 4; i++) {
+                    values[i] = rs.getObject(i + 2) == null ? -1 : rs.getLong(i + 2);
+                }
+                values[4] = withStale && rs.getBoolean(6) ? 1 : 0;
+                result.put(rs.getLong(1), values);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(long[] stored, long[] live) {
+        if (stored == null) {
+            return false;
+        }
+        boolean rangeStale = stored[4] == 1;
+        return stored[0] == live[0] && stored[1] == live[1]
+                && (rangeStale || (stored[2] == live[2] && stored[3] == live[3]));
+    }
+
+}
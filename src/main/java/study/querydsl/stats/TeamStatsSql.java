@@ -0,0 +1,101 @@
+package study.querydsl.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * team_stats 를 갱신하는 네이티브 SQL
+ *
+ * 증감은 update ... set member_count = member_count + ? 한 문장으로 처리하므로
+ * 동시에 같은 팀을 갱신해도 행 락으로 직렬화되어 값이 유실되지 않는다.
+ */
+final class TeamStatsSql {
+
+    static final String INSERT_EMPTY =
+            "insert into team_stats (team_id, member_count, age_sum, range_stale) values (?, 0, 0, false)";
+
+    static final String DELETE = "delete from team_stats where team_id = ?";
+
+    static final String DELETE_ALL = "delete from team_stats";
+
+    static final String LIVE_AGGREGATE =
+            "select t.team_id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)" +
+            " from team t left join member m on m.team_id = t.team_id";
+
+    static final String INSERT_FROM_LIVE =
+            "insert into team_stats (team_id, member_count, age_sum, min_age, max_age, range_stale) " +
+            LIVE_AGGREGATE.replace(" from ", ", false from ");
+
+    static final String REFRESH_RANGE =
+            "update team_stats s" +
+            " set min_age = (select min(m.age) from member m where m.team_id = s.team_id)," +
+            " max_age = (select max(m.age) from member m where m.team_id = s.team_id)," +
+            " range_stale = false" +
+            " where s.team_id = ?";
+
+    static final String SELECT_ALL =
+            "select team_id, member_count, age_sum, min_age, max_age, range_stale from team_stats";
+
+    private TeamStatsSql() {
+    }
+
+    /**
+     * @return 갱신된 행 수, 0 이면 아직 집계 행이 없는 팀
+     */
+    static int applyDelta(Connection connection, Long teamId, TeamStatsDeltas.Delta delta) throws SQLException {
+        StringBuilder sql = new StringBuilder("update team_stats set member_count = member_count + ?, age_sum = age_sum + ?");
+        if (delta.addedMin != null) {
+            sql.append(", min_age = least(coalesce(min_age, ?), ?), max_age = greatest(coalesce(max_age, ?), ?)");
+        }
+        if (delta.removed) {
+            sql.append(", range_stale = true");
+        }
+        sql.append(" where team_id = ?");
+
+        try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            int i = 1;
+            ps.setLong(i++, delta.count);
+            ps.setLong(i++, delta.sum);
+            if (delta.addedMin != null) {
+                ps.setInt(i++, delta.addedMin);
+                ps.setInt(i++, delta.addedMin);
+                ps.setInt(i++, delta.addedMax);
+                ps.setInt(i++, delta.addedMax);
+            }
+            ps.setLong(i, teamId);
+            return ps.executeUpdate();
+        }
+    }
+
+    static void executeForEach(Connection connection, String sql, Collection<Long> teamIds) throws SQLException {
+        if (teamIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (Long teamId : teamIds) {
+                ps.setLong(1, teamId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * 팀 행을 지우고 실제 회원 집계로 다시 넣는다. 없는 팀이면 지우기만 한다.
+     */
+    static void recompute(Connection connection, Collection<Long> teamIds) throws SQLException {
+        executeForEach(connection, DELETE, teamIds);
+        executeForEach(connection, INSERT_FROM_LIVE + " where t.team_id = ? group by t.team_id", teamIds);
+    }
+
+    static void rebuild(Connection connection) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(DELETE_ALL);
+             PreparedStatement insert = connection.prepareStatement(INSERT_FROM_LIVE + " group by t.team_id")) {
+            delete.executeUpdate();
+            insert.executeUpdate();
+        }
+    }
+
+}
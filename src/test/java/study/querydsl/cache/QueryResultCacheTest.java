@@ -0,0 +1,174 @@
+package study.querydsl.cache;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.StatementCounter;
+import study.querydsl.monitor.StatementScope;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 무효화는 커밋된 뒤에 일어나므로 트랜잭션을 직접 나눠서 데이터를 넣고, 끝나면 직접 정리한다.
+ */
+@SpringBootTest
+class QueryResultCacheTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	QueryResultCache queryResultCache;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	Long teamId;
+	Long memberId;
+
+	@BeforeEach
+	public void before() {
+		queryResultCache.invalidateAll();
+		teamId = tx.execute(status -> {
+			Team t = new Team("cacheTeam");
+			em.persist(t);
+			Member m = new Member("cached1", 10, t);
+			em.persist(m);
+			em.persist(new Member("cached2", 20, t));
+			memberId = m.getId();
+			return t.getId();
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).where(member.team.id.eq(teamId)).execute();
+			queryFactory.delete(team).where(team.id.eq(teamId)).execute();
+		});
+	}
+
+	@Test
+	public void repeatedSearchIsServedFromCache() {
+		long hitsBefore = queryResultCache.stats().hitCount();
+
+		assertThat(searchByTeam()).hasSize(2);
+		try (StatementScope scope = statementCounter.open("cachedSearch")) {
+			assertThat(searchByTeam()).hasSize(2);
+			assertThat(scope.getStatementCount()).isZero();
+		}
+
+		assertThat(queryResultCache.stats().hitCount()).isEqualTo(hitsBefore + 1);
+		assertThat(meterRegistry.get("cache.gets").tag("cache", QueryResultCache.CACHE_NAME).tag("result", "hit")
+				.functionCounter().count()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	public void memberChangeInvalidatesMemberQueriesOnly() {
+		searchByTeam();
+		List<String> teamNames = fetchTeamNames();
+
+		tx.executeWithoutResult(status -> em.find(Member.class, memberId).setAge(11));
+
+		assertThat(searchByTeam()).extracting(MemberTeamDto::getAge).contains(11);
+		//팀만 참조하는 결과는 회원 변경과 무관하므로 그대로 사용
+		try (StatementScope scope = statementCounter.open("teamsOnly")) {
+			assertThat(fetchTeamNames()).isSameAs(teamNames);
+			assertThat(scope.getStatementCount()).isZero();
+		}
+	}
+
+	/**
+	 * 프로젝션에 팀 이름이 있으므로 팀이 바뀌어도 무효화된다.
+	 */
+	@Test
+	public void teamChangeInvalidatesJoinedQueries() {
+		searchByTeam();
+
+		tx.executeWithoutResult(status -> em.find(Team.class, teamId).setName("cacheTeamRenamed"));
+
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername("cached1");
+		assertThat(memberRepository.search(condition)).extracting(MemberTeamDto::getTeamName)
+				.containsExactly("cacheTeamRenamed");
+		assertThat(searchByTeam()).isEmpty();
+	}
+
+	@Test
+	public void bulkUpdateInvalidates() {
+		searchByTeam();
+
+		tx.executeWithoutResult(status -> queryFactory
+				.update(member)
+				.set(member.age, 99)
+				.where(member.team.id.eq(teamId))
+				.execute());
+
+		assertThat(searchByTeam()).extracting(MemberTeamDto::getAge).containsOnly(99);
+	}
+
+	/**
+	 * 커밋 전 변경이 담긴 결과는 캐시에 들어가지 않고, 롤백되면 이전 결과를 계속 쓴다.
+	 */
+	@Test
+	public void uncommittedChangesAreNotCached() {
+		List<MemberTeamDto> committed = searchByTeam();
+
+		tx.executeWithoutResult(status -> {
+			em.persist(new Member("cachedUncommitted", 30, em.find(Team.class, teamId)));
+			em.flush();
+			assertThat(searchByTeam()).hasSize(3);
+			status.setRollbackOnly();
+		});
+
+		assertThat(searchByTeam()).isSameAs(committed);
+	}
+
+	@Test
+	public void referencedTypesIncludeImplicitJoins() {
+		assertThat(queryResultCache.referencedTypes(queryFactory
+				.select(member.username)
+				.from(member)
+				.where(member.team.name.eq("x"))
+				.getMetadata()))
+				.containsExactlyInAnyOrder(Member.class, Team.class);
+	}
+
+	private List<MemberTeamDto> searchByTeam() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("cacheTeam");
+		return memberRepository.search(condition);
+	}
+
+	private List<String> fetchTeamNames() {
+		return queryResultCache.fetch(queryFactory.select(team.name).from(team).where(team.name.startsWith("cacheTeam")));
+	}
+
+}
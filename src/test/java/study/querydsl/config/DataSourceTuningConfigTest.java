@@ -0,0 +1,33 @@
+package study.querydsl.config;
+
+import com.github.gavlyukovskiy.boot.jdbc.decorator.DecoratedDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * p6spy 가 감싼 실제 컨텍스트에서도 풀 크기가 코어 수로 정해지는지 확인한다.
+ */
+@SpringBootTest(properties = "datasource.pool.size-from-cores=true")
+class DataSourceTuningConfigTest {
+
+	@Autowired
+	DataSource dataSource;
+
+	@Test
+	public void poolIsSizedBehindDecorator() {
+		DataSource real = dataSource instanceof DecoratedDataSource
+				? ((DecoratedDataSource) dataSource).getRealDataSource()
+				: dataSource;
+
+		assertThat(real).isInstanceOf(HikariDataSource.class);
+		assertThat(((HikariDataSource) real).getMaximumPoolSize())
+				.isEqualTo(Runtime.getRuntime().availableProcessors() * 2 + 1);
+	}
+
+}
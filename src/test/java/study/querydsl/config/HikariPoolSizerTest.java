@@ -0,0 +1,51 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 풀을 시작하지 않으므로 스프링 컨텍스트나 DB 없이 확인한다.
+ */
+class HikariPoolSizerTest {
+
+	@Test
+	public void poolSizeFromCores() {
+		HikariPoolSizer sizer = new HikariPoolSizer(4, 1);
+		HikariDataSource dataSource = new HikariDataSource();
+
+		sizer.postProcessAfterInitialization(dataSource, "dataSource");
+
+		assertThat(dataSource.getMaximumPoolSize()).isEqualTo(9);
+	}
+
+	@Test
+	public void explicitPoolSizeWins() {
+		HikariPoolSizer sizer = new HikariPoolSizer(4, 1);
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setMaximumPoolSize(20);
+
+		sizer.postProcessAfterInitialization(dataSource, "dataSource");
+
+		assertThat(dataSource.getMaximumPoolSize()).isEqualTo(20);
+	}
+
+	/**
+	 * 복제본 풀(replica.datasource.maximum-pool-size)은 spring.datasource 설정과 관계없이 자기 값을 유지한다.
+	 */
+	@Test
+	public void replicaPoolSizeIsKept() {
+		HikariPoolSizer sizer = new HikariPoolSizer(4, 1);
+		HikariDataSource primary = new HikariDataSource();
+		HikariDataSource replica = new HikariDataSource();
+		replica.setMaximumPoolSize(3);
+
+		sizer.postProcessAfterInitialization(primary, "primaryDataSource");
+		sizer.postProcessAfterInitialization(replica, "replicaDataSource");
+
+		assertThat(primary.getMaximumPoolSize()).isEqualTo(9);
+		assertThat(replica.getMaximumPoolSize()).isEqualTo(3);
+	}
+
+}
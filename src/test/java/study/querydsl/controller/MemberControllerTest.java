@@ -0,0 +1,189 @@
+package study.querydsl.controller;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 조회는 요청 스레드가 아닌 applicationTaskExecutor 에서 별도 트랜잭션으로 실행되므로 데이터를 커밋하고 직접 정리한다.
+ */
+@SpringBootTest
+class MemberControllerTest {
+
+	@Autowired
+	WebApplicationContext context;
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	MockMvc mockMvc;
+	Long teamId;
+
+	@BeforeEach
+	public void before() {
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+		teamId = tx.execute(status -> {
+			Team t = new Team("apiTeam");
+			em.persist(t);
+			em.persist(new Member("api1", 10, t));
+			em.persist(new Member("api2", 20, t));
+			em.persist(new Member("api3", 20, t));
+			return t.getId();
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).where(member.team.id.eq(teamId)).execute();
+			queryFactory.delete(team).where(team.id.eq(teamId)).execute();
+		});
+	}
+
+	@Test
+	public void search() throws Exception {
+		MvcResult result = mockMvc.perform(get("/members").param("username", "api2").param("age", "20"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].username").value("api2"))
+				.andExpect(jsonPath("$[0].age").value(20));
+	}
+
+	@Test
+	public void searchPage() throws Exception {
+		MvcResult result = mockMvc.perform(get("/members/search")
+						.param("teamName", "apiTeam")
+						.param("ageGoe", "20")
+						.param("sort", "username,desc")
+						.param("size", "1"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.totalElements").value(2))
+				.andExpect(jsonPath("$.content[0].username").value("api3"))
+				.andExpect(jsonPath("$.content[0].teamName").value("apiTeam"));
+	}
+
+	@Test
+	public void searchPageWithUnsupportedSort() throws Exception {
+		MvcResult result = mockMvc.perform(get("/members/search").param("sort", "foo"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string("unsupported sort property: foo"));
+	}
+
+	@Test
+	public void teams() throws Exception {
+		MvcResult result = mockMvc.perform(get("/teams"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[?(@.name == 'apiTeam')].id").value(teamId.intValue()));
+	}
+
+	@Test
+	public void exportNdjson() throws Exception {
+		MvcResult result = mockMvc.perform(get("/members/export"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		String body = mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MemberController.APPLICATION_NDJSON))
+				.andReturn().getResponse().getContentAsString();
+
+		assertThat(Arrays.asList(body.split("\n")))
+				.contains("{\"username\":\"api1\",\"age\":10}",
+						"{\"username\":\"api2\",\"age\":20}",
+						"{\"username\":\"api3\",\"age\":20}");
+	}
+
+	/**
+	 * 내보내기(MVC 비동기 응답)는 검색용 applicationTaskExecutor 가 아닌 전용 풀에서 실행된다.
+	 */
+	@Test
+	public void exportRunsOnItsOwnExecutor() {
+		RequestMappingHandlerAdapter adapter = context.getBean(RequestMappingHandlerAdapter.class);
+		Object executor = ReflectionTestUtils.getField(adapter, "taskExecutor");
+
+		assertThat(executor).isInstanceOf(ThreadPoolTaskExecutor.class)
+				.isNotSameAs(context.getBean("applicationTaskExecutor"));
+		assertThat(((ThreadPoolTaskExecutor) executor).getThreadNamePrefix()).isEqualTo("export-");
+		assertThat(((ThreadPoolTaskExecutor) executor).getMaxPoolSize()).isEqualTo(2);
+	}
+
+	/**
+	 * 내보내기 풀의 실행 슬롯과 대기열이 모두 차면 새 내보내기는 503 으로 거절된다.
+	 */
+	@Test
+	public void exportIsRejectedWhenPoolIsFull() throws Exception {
+		RequestMappingHandlerAdapter adapter = context.getBean(RequestMappingHandlerAdapter.class);
+		ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) ReflectionTestUtils.getField(adapter, "taskExecutor");
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			int slots = executor.getMaxPoolSize() + executor.getThreadPoolExecutor().getQueue().remainingCapacity();
+			for (int i = 0; i < slots; i++) {
+				executor.execute(() -> {
+					try {
+						release.await(30, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+
+			MvcResult result = mockMvc.perform(get("/members/export")).andReturn();
+
+			assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+		} finally {
+			release.countDown();
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package study.querydsl.monitor;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+@ExtendWith(OutputCaptureExtension.class)
+class QueryMetricsTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	MeterRegistry registry;
+
+	@BeforeEach
+	public void before() {
+		registry = new SimpleMeterRegistry();
+
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.flush();
+		em.clear();
+	}
+
+	/**
+	 * 지연 로딩으로 추가된 SQL 도 같은 쿼리 이름의 statements 로 집계된다.
+	 */
+	@Test
+	public void recordsLatencyRowsAndStatements() {
+		QueryMetrics queryMetrics = new QueryMetrics(registry, statementCounter, Duration.ofSeconds(10));
+
+		for (int i = 0; i < 3; i++) {
+			queryMetrics.fetch("member.all", queryFactory.selectFrom(member));
+		}
+		queryMetrics.record("member.withTeam", () -> {
+			List<Member> members = queryFactory.selectFrom(member).fetch();
+			members.forEach(m -> m.getTeam().getName());
+			return members;
+		});
+
+		Timer latency = registry.get("querydsl.query").tag("query", "member.all").timer();
+		assertThat(latency.count()).isEqualTo(3);
+		assertThat(latency.totalTime(TimeUnit.NANOSECONDS)).isPositive();
+		assertThat(registry.get("querydsl.query.rows").tag("query", "member.all").summary().totalAmount())
+				.isEqualTo(9);
+		assertThat(registry.get("querydsl.query.statements").tag("query", "member.all").summary().max())
+				.isEqualTo(1);
+		//회원 조회 1번 + 팀 배치 조회 1번
+		assertThat(registry.get("querydsl.query.statements").tag("query", "member.withTeam").summary().max())
+				.isEqualTo(2);
+	}
+
+	/**
+	 * Page/Slice 는 객체 하나가 아니라 그 페이지에 담긴 건수로 집계된다.
+	 */
+	@Test
+	public void pageRowsAreCounted() {
+		QueryMetrics queryMetrics = new QueryMetrics(registry, statementCounter, Duration.ofSeconds(10));
+
+		queryMetrics.record("member.page", () -> {
+			List<Member> content = queryFactory.selectFrom(member).orderBy(member.username.asc()).limit(2).fetch();
+			return new PageImpl<>(content, PageRequest.of(0, 2), 3);
+		});
+
+		assertThat(registry.get("querydsl.query.rows").tag("query", "member.page").summary().totalAmount())
+				.isEqualTo(2);
+	}
+
+	@Test
+	public void countsErrors() {
+		QueryMetrics queryMetrics = new QueryMetrics(registry, statementCounter, Duration.ofSeconds(10));
+
+		assertThatThrownBy(() -> queryMetrics.record("broken", () -> {
+			throw new IllegalStateException("broken");
+		})).isInstanceOf(IllegalStateException.class);
+
+		assertThat(registry.get("querydsl.query.errors").tag("query", "broken").counter().count()).isEqualTo(1);
+		assertThat(registry.get("querydsl.query").tag("query", "broken").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void slowQueryIsLogged(CapturedOutput output) {
+		QueryMetrics queryMetrics = new QueryMetrics(registry, statementCounter, Duration.ZERO);
+
+		Long count = queryMetrics.fetchOne("member.count", queryFactory.select(member.count()).from(member));
+
+		assertThat(count).isEqualTo(3);
+		assertThat(output).contains("[member.count] slow query:", "1 rows, 1 statements");
+	}
+
+}
@@ -0,0 +1,107 @@
+package study.querydsl.monitor;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+@ExtendWith(OutputCaptureExtension.class)
+class SampledStatementTracerTest {
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	SampledStatementTracer tracer;
+
+	@Autowired
+	SqlTraceEndpoint sqlTraceEndpoint;
+
+	boolean enabled;
+	double sampleRate;
+	Duration slowThreshold;
+
+	@BeforeEach
+	public void before() {
+		enabled = tracer.isEnabled();
+		sampleRate = tracer.getSampleRate();
+		slowThreshold = tracer.getSlowThreshold();
+	}
+
+	@AfterEach
+	public void after() {
+		tracer.setEnabled(enabled);
+		tracer.setSampleRate(sampleRate);
+		tracer.setSlowThreshold(slowThreshold);
+	}
+
+	@Test
+	public void notSampledStatementsAreOnlyCounted() {
+		sqlTraceEndpoint.configure(true, 0.0, 60_000L);
+		long statements = tracer.getStatementCount();
+		long traced = tracer.getTracedCount();
+
+		for (int i = 0; i < 10; i++) {
+			queryFactory.selectFrom(member).where(member.age.eq(i)).fetch();
+		}
+
+		assertThat(tracer.getStatementCount() - statements).isEqualTo(10);
+		assertThat(tracer.getTracedCount()).isEqualTo(traced);
+	}
+
+	@Test
+	public void sampledStatementsAreWrittenAsynchronously(CapturedOutput output) throws InterruptedException {
+		sqlTraceEndpoint.configure(true, 1.0, 60_000L);
+		long written = tracer.getWrittenCount();
+
+		queryFactory.selectFrom(member).where(member.username.eq("sampledUser")).fetch();
+
+		awaitWritten(written + 1);
+		assertThat(output).contains("[sampled]", "'sampledUser'");
+	}
+
+	@Test
+	public void slowStatementsAreAlwaysWritten(CapturedOutput output) throws InterruptedException {
+		sqlTraceEndpoint.configure(true, 0.0, 0L);
+		long written = tracer.getWrittenCount();
+
+		queryFactory.selectFrom(member).where(member.username.eq("slowUser")).fetch();
+
+		awaitWritten(written + 1);
+		assertThat(output).contains("[slow]", "'slowUser'");
+	}
+
+	@Test
+	public void disabledAtRuntime() {
+		Map<String, Object> status = sqlTraceEndpoint.configure(false, null, null);
+		long statements = tracer.getStatementCount();
+
+		queryFactory.selectFrom(member).fetch();
+
+		assertThat(status).containsEntry("enabled", false);
+		assertThat(tracer.getStatementCount()).isEqualTo(statements);
+	}
+
+	private void awaitWritten(long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (tracer.getWrittenCount() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(tracer.getWrittenCount()).isGreaterThanOrEqualTo(expected);
+	}
+
+}
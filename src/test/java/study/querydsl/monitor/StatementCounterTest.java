@@ -0,0 +1,145 @@
+package study.querydsl.monitor;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class StatementCounterTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	@BeforeEach
+	public void before() {
+		for (int i = 0; i < 5; i++) {
+			Team t = new Team("counterTeam" + i);
+			em.persist(t);
+			em.persist(new Member("counterMember" + i, 10 + i, t));
+		}
+		em.flush();
+		em.clear();
+	}
+
+	/*팀마다 회원을 따로 조회하면 파라미터만 다른 SELECT 가 반복된다.*/
+	@Test
+	public void repeatedQueryIsDetected() {
+		try (StatementScope scope = statementCounter.open("perTeam")) {
+			List<Team> teams = queryFactory
+					.selectFrom(team)
+					.where(team.name.startsWith("counterTeam"))
+					.fetch();
+			for (Team t : teams) {
+				queryFactory.selectFrom(member).where(member.team.eq(t)).fetch();
+			}
+
+			assertThat(scope.getStatementCount()).isEqualTo(6);
+			assertThat(scope.getMaxRepeatCount()).isEqualTo(5);
+			assertThatThrownBy(() -> scope.assertRepeatedAtMost(2))
+					.isInstanceOf(RepeatedStatementException.class);
+		}
+	}
+
+	/*페치 조인 없이 member.team 에 접근해도 default_batch_fetch_size 로 팀 프록시를 한 번에 초기화한다.*/
+	@Test
+	public void lazyTeamAccessIsBatchFetched() {
+		try (StatementScope scope = statementCounter.open("lazy")) {
+			List<Member> members = queryFactory
+					.selectFrom(member)
+					.where(member.username.startsWith("counterMember"))
+					.fetch();
+			members.forEach(m -> m.getTeam().getName());
+
+			assertThat(scope.getStatementCount()).isEqualTo(2);
+			scope.assertRepeatedAtMost(1);
+		}
+	}
+
+	@Test
+	public void fetchJoinPassesAssertion() {
+		try (StatementScope scope = statementCounter.open("fetchJoin")) {
+			List<Member> members = queryFactory
+					.selectFrom(member)
+					.join(member.team, team).fetchJoin()
+					.where(member.username.startsWith("counterMember"))
+					.fetch();
+			members.forEach(m -> m.getTeam().getName());
+
+			assertThat(scope.getStatementCount()).isEqualTo(1);
+			scope.assertRepeatedAtMost(1);
+		}
+	}
+
+	@Test
+	public void nestedScopesAreRecordedTogether() {
+		try (StatementScope outer = statementCounter.open("outer")) {
+			try (StatementScope inner = statementCounter.open("inner")) {
+				queryFactory.selectFrom(member).fetch();
+				assertThat(statementCounter.currentScope()).isSameAs(inner);
+			}
+			queryFactory.selectFrom(team).fetch();
+
+			assertThat(statementCounter.currentScope()).isSameAs(outer);
+			assertThat(outer.getStatementCount()).isEqualTo(2);
+		}
+		assertThat(statementCounter.currentScope()).isNull();
+	}
+
+	/*문장 수만 세는 스코프는 문장을 모으지 않고, 바깥 스코프는 그대로 반복을 검사한다.*/
+	@Test
+	public void countingScopeSkipsStatements() {
+		StatementCounter strictCounter = new StatementCounter(2, true);
+		StatementScope outer = strictCounter.open("request");
+		try (StatementScope counting = strictCounter.openCounting("metric")) {
+			for (int i = 0; i < 3; i++) {
+				strictCounter.record("select * from team where team_id=" + i);
+			}
+
+			assertThat(counting.getStatementCount()).isEqualTo(3);
+			assertThat(counting.getStatements()).isEmpty();
+			assertThat(counting.getMaxRepeatCount()).isZero();
+		}
+
+		assertThat(outer.getStatements()).containsExactly("select * from team where team_id=?");
+		assertThatThrownBy(outer::close).isInstanceOf(RepeatedStatementException.class);
+	}
+
+	@Test
+	public void failOnRepeatWhenClosing() {
+		StatementCounter strictCounter = new StatementCounter(2, true);
+		StatementScope scope = strictCounter.open("strict");
+		for (int i = 0; i < 3; i++) {
+			strictCounter.record("select * from team where team_id=" + i);
+		}
+
+		assertThatThrownBy(scope::close).isInstanceOf(RepeatedStatementException.class);
+		assertThat(strictCounter.currentScope()).isNull();
+	}
+
+	@Test
+	public void normalizeIgnoresParametersAndComments() {
+		assertThat(StatementScope.normalize("/* load Team */ select t.name from team t where t.id = 42 and t.name = 'A''s'"))
+				.isEqualTo(StatementScope.normalize("select t.name from team t\nwhere t.id = 7 and t.name = 'B'"));
+	}
+
+}
@@ -0,0 +1,113 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class DtoProjectionsTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		em.persist(new Member("projection1", 10, teamA));
+		em.persist(new Member("projection2", 20, teamA));
+	}
+
+	@Test
+	public void constructor() {
+		List<MemberDto> result = queryFactory
+				.select(DtoProjections.constructor(MemberDto.class, member.username, member.age))
+				.from(member)
+				.where(member.username.startsWith("projection"))
+				.orderBy(member.username.asc())
+				.fetch();
+
+		assertThat(result).extracting("username", "age")
+				.containsExactly(
+						tuple("projection1", 10),
+						tuple("projection2", 20));
+	}
+
+	/*필드 이름이 다르면 별칭 사용*/
+	@Test
+	public void beanWithAlias() {
+		List<UserDto> result = queryFactory
+				.select(DtoProjections.bean(UserDto.class, member.username.as("name"), member.age))
+				.from(member)
+				.where(member.username.eq("projection2"))
+				.fetch();
+
+		assertThat(result).hasSize(1);
+		assertThat(result.get(0).getName()).isEqualTo("projection2");
+		assertThat(result.get(0).getAge()).isEqualTo(20);
+	}
+
+	@Test
+	public void beanSkipsNullValues() {
+		FactoryExpression<MemberDto> projection = DtoProjections.bean(MemberDto.class, member.username, member.age);
+
+		MemberDto dto = projection.newInstance(null, 30);
+
+		assertThat(dto.getUsername()).isNull();
+		assertThat(dto.getAge()).isEqualTo(30);
+	}
+
+	/**
+	 * 회원 없는 팀을 외부 조인해서 집계하면 max(age) 가 null 이다. 기본형 파라미터에는 0 이 들어간다.
+	 */
+	@Test
+	public void constructorMapsNullToPrimitiveDefault() {
+		em.persist(new Team("emptyProjectionTeam"));
+
+		List<MemberDto> result = queryFactory
+				.select(DtoProjections.constructor(MemberDto.class, team.name, member.age.max()))
+				.from(team)
+				.leftJoin(team.members, member)
+				.where(team.name.in("teamA", "emptyProjectionTeam"))
+				.groupBy(team.name)
+				.orderBy(team.name.asc())
+				.fetch();
+
+		assertThat(result).extracting("username", "age")
+				.containsExactly(
+						tuple("emptyProjectionTeam", 0),
+						tuple("teamA", 20));
+		assertThat(DtoProjections.constructor(MemberDto.class, member.username, member.age).newInstance("x", null).getAge())
+				.isZero();
+	}
+
+	@Test
+	public void noMatchingConstructor() {
+		assertThatThrownBy(() -> DtoProjections.constructor(MemberDto.class, member.age, member.username))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> DtoProjections.bean(UserDto.class, member.username))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
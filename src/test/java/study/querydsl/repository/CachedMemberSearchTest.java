@@ -0,0 +1,68 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class CachedMemberSearchTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	CachedMemberSearch cachedMemberSearch;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+
+		em.persist(new Member("cached1", 10, teamA));
+		em.persist(new Member("cached2", 20, teamA));
+		em.persist(new Member("cached3", 20, teamA));
+	}
+
+	@Test
+	public void search() {
+		List<Member> byBoth = cachedMemberSearch.search("cached1", 10);
+		List<Member> byUsername = cachedMemberSearch.search("cached2", null);
+		List<Member> byAge = cachedMemberSearch.search(null, 20);
+
+		assertThat(byBoth).extracting("username").containsExactly("cached1");
+		assertThat(byUsername).extracting("username").containsExactly("cached2");
+		assertThat(byAge).extracting("username").contains("cached2", "cached3");
+	}
+
+	/**
+	 * 조건 조합마다 한 번만 JPQL 을 만들고 이후에는 캐시를 사용한다.
+	 */
+	@Test
+	public void cachePerPredicateCombination() {
+		long hits = cachedMemberSearch.getHitCount();
+		long misses = cachedMemberSearch.getMissCount();
+
+		for (int i = 0; i < 10; i++) {
+			cachedMemberSearch.search("cached1", 10);
+			cachedMemberSearch.search("cached" + i, null);
+			cachedMemberSearch.search(null, i);
+		}
+
+		long newMisses = cachedMemberSearch.getMissCount() - misses;
+		long newHits = cachedMemberSearch.getHitCount() - hits;
+		assertThat(newMisses).isLessThanOrEqualTo(3);
+		assertThat(newHits + newMisses).isEqualTo(30);
+		assertThat(cachedMemberSearch.getCachedQueryCount()).isBetween(3, 4);
+	}
+
+}
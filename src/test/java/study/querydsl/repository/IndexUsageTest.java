@@ -0,0 +1,124 @@
+package study.querydsl.repository;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.StatementCounter;
+import study.querydsl.monitor.StatementScope;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 리포지토리 쿼리가 실행한 SQL 을 H2 EXPLAIN 으로 확인해서 인덱스를 타는지 검사한다.
+ * 인덱스를 지우거나 조건/정렬이 인덱스와 어긋나게 바뀌면 실패한다.
+ */
+@SpringBootTest
+@Transactional
+class IndexUsageTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	@Autowired
+	CachedMemberSearch cachedMemberSearch;
+
+	@Autowired
+	TeamQueryRepository teamQueryRepository;
+
+	@Autowired
+	MemberQueryRepository memberQueryRepository;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("explainTeamA");
+		Team teamB = new Team("explainTeamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		for (int i = 0; i < 20; i++) {
+			em.persist(new Member("explain" + i, 10 + i % 5, i % 2 == 0 ? teamA : teamB));
+		}
+		em.flush();
+		em.clear();
+	}
+
+	@Test
+	public void searchByUsernameAndAge() {
+		assertThat(explain(() -> cachedMemberSearch.search("explain1", 11)))
+				.singleElement().asString().contains("IDX_MEMBER_USERNAME_AGE");
+		assertThat(explain(() -> cachedMemberSearch.search("explain1", null)))
+				.singleElement().asString().containsPattern("IDX_MEMBER_USERNAME_\\w+: USERNAME = \\?1");
+		assertThat(explain(() -> cachedMemberSearch.search(null, 11)))
+				.singleElement().asString().contains("IDX_MEMBER_AGE_USERNAME_ID");
+	}
+
+	@Test
+	public void findTeamByName() {
+		assertThat(explain(() -> teamQueryRepository.findByName("explainTeamA")))
+				.singleElement().asString().contains("IDX_TEAM_NAME");
+	}
+
+	@Test
+	public void keysetPageIsIndexSorted() {
+		String token = memberQueryRepository.searchByKeyset(null, 5, false).getNextToken();
+
+		assertThat(explain(() -> memberQueryRepository.searchByKeyset(token, 5, false)))
+				.singleElement().asString()
+				.contains("IDX_MEMBER_AGE_USERNAME_ID")
+				.contains("index sorted");
+	}
+
+	@Test
+	public void pageWithTeamFilter() {
+		assertThat(explain(() -> memberQueryRepository.searchPageWithTeam("explainTeamA", PageRequest.of(0, 3))))
+				.hasSize(2)
+				.allSatisfy(plan -> assertThat(plan).contains("IDX_TEAM_NAME"));
+	}
+
+	@Test
+	public void pageOrderedByUsernameIsIndexSorted() {
+		List<String> plans = explain(() -> memberQueryRepository.searchPageWithTeam(null, PageRequest.of(0, 3)));
+
+		assertThat(plans).anySatisfy(plan -> assertThat(plan)
+				.contains("IDX_MEMBER_USERNAME_DESC")
+				.contains("index sorted"));
+	}
+
+	/**
+	 * 쿼리를 실행하면서 기록된 SQL 마다 EXPLAIN 결과를 돌려준다.
+	 */
+	private List<String> explain(Runnable query) {
+		List<String> statements = new ArrayList<>();
+		try (StatementScope scope = statementCounter.open("explain")) {
+			query.run();
+			statements.addAll(scope.getStatements());
+		}
+
+		List<String> plans = new ArrayList<>();
+		em.unwrap(SessionImplementor.class).doWork(connection -> {
+			for (String sql : statements) {
+				try (PreparedStatement ps = connection.prepareStatement("explain " + sql);
+					 ResultSet rs = ps.executeQuery()) {
+					rs.next();
+					plans.add(rs.getString(1));
+				}
+			}
+		});
+		return plans;
+	}
+
+}
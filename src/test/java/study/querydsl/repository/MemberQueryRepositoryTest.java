@@ -0,0 +1,181 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberBatchService;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class MemberQueryRepositoryTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberQueryRepository memberQueryRepository;
+
+	@Autowired
+	MemberBatchService memberBatchService;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Test
+	public void streamMemberDto() {
+		saveMembers(500);
+
+		long count;
+		try (Stream<MemberDto> stream = memberQueryRepository.streamMemberDto(100)) {
+			count = stream.filter(dto -> dto.getUsername().startsWith("stream")).count();
+		}
+
+		assertThat(count).isEqualTo(500);
+		assertThat(managedEntityCount()).isZero();
+	}
+
+	/**
+	 * 행 수가 늘어나도 스트리밍 중 영속성 컨텍스트에 남는 엔티티 수(=힙 사용량)는 늘어나지 않는다.
+	 */
+	@Test
+	public void streamMembersKeepsPersistenceContextFlat() {
+		saveMembers(500);
+		int peakSmall = peakManagedEntityCount();
+
+		saveMembers(2_000);
+		int peakLarge = peakManagedEntityCount();
+
+		//회원 1건 + 팀 프록시 1건
+		assertThat(peakSmall).isLessThanOrEqualTo(2);
+		assertThat(peakLarge).isEqualTo(peakSmall);
+	}
+
+	/**
+	 * 키셋 페이징으로 끝까지 넘긴 결과는 offset 페이징으로 전체 조회한 결과와 같다.
+	 */
+	@Test
+	public void searchByKeysetVisitsEveryRowInOrder() {
+		saveMembers(45);
+		em.persist(new Member(null, 10));
+		em.persist(new Member(null, 10));
+		em.flush();
+		em.clear();
+
+		List<Long> expected = queryFactory
+				.select(member.id)
+				.from(member)
+				.orderBy(member.age.asc(), member.username.asc().nullsFirst(), member.id.asc())
+				.fetch();
+
+		List<Long> visited = new ArrayList<>();
+		String token = null;
+		KeysetSlice<Member> slice;
+		do {
+			slice = memberQueryRepository.searchByKeyset(token, 10, false);
+			slice.getContent().forEach(m -> visited.add(m.getId()));
+			token = slice.getNextToken();
+			assertThat(slice.getTotal()).isNull();
+		} while (slice.isHasNext());
+
+		assertThat(visited).isEqualTo(expected);
+	}
+
+	@Test
+	public void searchByKeysetWithTotal() {
+		saveMembers(15);
+
+		KeysetSlice<Member> first = memberQueryRepository.searchByKeyset(null, 10, true);
+		KeysetSlice<Member> second = memberQueryRepository.searchByKeyset(first.getNextToken(), 10, true);
+
+		assertThat(first.isHasNext()).isTrue();
+		assertThat(first.getTotal()).isEqualTo(second.getTotal());
+		assertThat(second.getContent().size()).isEqualTo(first.getTotal() - 10);
+		assertThat(second.isHasNext()).isFalse();
+		assertThat(second.getNextToken()).isNull();
+	}
+
+	@Test
+	public void searchByKeysetRejectsInvalidToken() {
+		assertThatThrownBy(() -> memberQueryRepository.searchByKeyset("not-a-token", 10, false))
+				.isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasCauseInstanceOf(IllegalArgumentException.class);
+	}
+
+	/**
+	 * 깊은 페이지에서도 키셋 페이지는 같은 위치의 offset 페이지와 같다.
+	 * 조회 시간 비교는 KeysetPagingBenchmark, 인덱스 범위 탐색 여부는 IndexUsageTest 에서 확인한다.
+	 */
+	@Test
+	public void deepKeysetPageMatchesOffsetPage() {
+		int rows = 5_000;
+		int pageSize = 20;
+		int deepOffset = rows - pageSize;
+		saveMembers(rows);
+
+		Member lastOfPreviousPage = queryFactory
+				.selectFrom(member)
+				.orderBy(MemberKeyset.ORDER)
+				.offset(deepOffset - 1)
+				.limit(1)
+				.fetchOne();
+		String token = MemberKeyset.of(lastOfPreviousPage).encode();
+		em.clear();
+
+		List<Long> offsetPage = queryFactory
+				.select(member.id)
+				.from(member)
+				.orderBy(MemberKeyset.ORDER)
+				.offset(deepOffset)
+				.limit(pageSize)
+				.fetch();
+		List<Member> keysetPage = memberQueryRepository.searchByKeyset(token, pageSize, false).getContent();
+
+		assertThat(keysetPage).extracting("id").isEqualTo(offsetPage);
+	}
+
+	private int peakManagedEntityCount() {
+		int peak = 0;
+		try (Stream<Member> stream = memberQueryRepository.streamMembers(100)) {
+			Iterator<Member> iterator = stream.iterator();
+			while (iterator.hasNext()) {
+				iterator.next();
+				peak = Math.max(peak, managedEntityCount());
+			}
+		}
+		assertThat(managedEntityCount()).isZero();
+		return peak;
+	}
+
+	private void saveMembers(int size) {
+		Team team = new Team("streamTeam");
+		em.persist(team);
+
+		List<Member> members = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			members.add(new Member("stream" + i, i % 100, team));
+		}
+		memberBatchService.saveAll(members);
+	}
+
+	private int managedEntityCount() {
+		return em.unwrap(Session.class).getStatistics().getEntityCount();
+	}
+
+}
@@ -0,0 +1,145 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.StatementCounter;
+import study.querydsl.monitor.StatementScope;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Transactional
+class MemberRepositoryTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberRepository memberRepository;
+
+	@Autowired
+	TeamRepository teamRepository;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = teamRepository.save(new Team("repoTeamA"));
+		Team teamB = teamRepository.save(new Team("repoTeamB"));
+		memberRepository.save(new Member("repo1", 10, teamA));
+		memberRepository.save(new Member("repo2", 20, teamA));
+		memberRepository.save(new Member("repo3", 30, teamB));
+		memberRepository.save(new Member("repo4", 40, teamB));
+		memberRepository.save(new Member("repoLoner", 40));
+		em.flush();
+		em.clear();
+	}
+
+	@Test
+	public void springDataBasics() {
+		assertThat(memberRepository.findByUsername("repo1")).extracting("age").containsExactly(10);
+		assertThat(teamRepository.findByName("repoTeamB")).get().extracting("name").isEqualTo("repoTeamB");
+	}
+
+	@Test
+	public void search() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(35);
+		condition.setAgeLoe(40);
+		condition.setTeamName("repoTeamB");
+
+		List<MemberTeamDto> result = memberRepository.search(condition);
+
+		assertThat(result).extracting("username", "teamName")
+				.containsExactly(tuple("repo4", "repoTeamB"));
+	}
+
+	/**
+	 * 팀 이름 조건이 없으면 팀 없는 회원도 나온다. (left join)
+	 */
+	@Test
+	public void searchIncludesMembersWithoutTeam() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername("repoLoner");
+
+		assertThat(memberRepository.search(condition))
+				.singleElement()
+				.satisfies(dto -> assertThat(dto.getTeamName()).isNull());
+	}
+
+	@Test
+	public void searchPageWithSort() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setAgeGoe(20);
+		condition.setTeamName(""); //빈 문자열은 조건 없음
+
+		Page<MemberTeamDto> page;
+		try (StatementScope scope = statementCounter.open("searchPage")) {
+			page = memberRepository.searchPage(condition,
+					PageRequest.of(0, 2, Sort.by(Sort.Order.desc("age"), Sort.Order.asc("username"))));
+			//내용 + 카운트
+			assertThat(scope.getStatementCount()).isEqualTo(2);
+		}
+
+		assertThat(page.getTotalElements()).isGreaterThanOrEqualTo(4);
+		assertThat(page.getContent()).extracting("age").isSortedAccordingTo((a, b) -> (int) b - (int) a);
+	}
+
+	/**
+	 * 첫 페이지가 페이지 크기보다 작으면 카운트 쿼리를 실행하지 않는다.
+	 */
+	@Test
+	public void searchPageSkipsCountOnShortFirstPage() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setTeamName("repoTeamA");
+
+		try (StatementScope scope = statementCounter.open("searchPage")) {
+			Page<MemberTeamDto> page = memberRepository.searchPage(condition, PageRequest.of(0, 10));
+
+			assertThat(page.getTotalElements()).isEqualTo(2);
+			assertThat(scope.getStatementCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void searchSliceHasNoCountQuery() {
+		MemberSearchCondition condition = new MemberSearchCondition();
+		condition.setUsername(null);
+		condition.setAgeGoe(10);
+
+		try (StatementScope scope = statementCounter.open("searchSlice")) {
+			Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, PageRequest.of(0, 2, Sort.by("memberId")));
+
+			assertThat(first.getContent()).hasSize(2);
+			assertThat(first.hasNext()).isTrue();
+			assertThat(scope.getStatementCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void unsupportedSortProperty() {
+		assertThatThrownBy(() -> memberRepository.searchPage(new MemberSearchCondition(),
+				PageRequest.of(0, 10, Sort.by("team.id"))))
+				.isInstanceOf(InvalidDataAccessApiUsageException.class)
+				.hasMessageContaining("team.id");
+	}
+
+}
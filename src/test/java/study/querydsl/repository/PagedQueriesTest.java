@@ -0,0 +1,180 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.StatementCounter;
+import study.querydsl.monitor.StatementScope;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class PagedQueriesTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	PagedQueries pagedQueries;
+
+	@Autowired
+	MemberQueryRepository memberQueryRepository;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("teamA");
+		Team teamB = new Team("teamB");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("member1", 10, teamA));
+		em.persist(new Member("member2", 20, teamA));
+		em.persist(new Member("member3", 30, teamB));
+		em.persist(new Member("member4", 40, teamB));
+		em.flush();
+		em.clear();
+		pagedQueries.evictCounts();
+	}
+
+	@Test
+	public void countQueryDropsFetchJoinAndOrderBy() {
+		String count = pagedQueries.countQuery(queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team).fetchJoin()
+				.orderBy(member.username.desc())).toString();
+
+		assertThat(count).contains("count(*)").doesNotContain("join", "order by");
+	}
+
+	@Test
+	public void countQueryKeepsReferencedAndFilteringJoins() {
+		String referenced = pagedQueries.countQuery(queryFactory
+				.selectFrom(member)
+				.leftJoin(member.team, team).fetchJoin()
+				.where(team.name.eq("teamA"))).toString();
+		String inner = pagedQueries.countQuery(queryFactory
+				.selectFrom(member)
+				.join(member.team, team)).toString();
+		String toMany = pagedQueries.countQuery(queryFactory
+				.selectFrom(team)
+				.leftJoin(team.members, member)).toString();
+
+		assertThat(referenced).contains("left join member1.team as team").doesNotContain("fetch");
+		assertThat(inner).contains("inner join member1.team as team");
+		assertThat(toMany).contains("left join team.members as member1");
+	}
+
+	/**
+	 * 루트가 아닌 값을 중복 제거하면 회원 수가 아닌 값의 종류 수가 전체 건수다.
+	 */
+	@Test
+	public void distinctCountFollowsProjection() {
+		Page<String> teamNames = pagedQueries.fetchPage(queryFactory
+				.selectDistinct(team.name)
+				.from(member)
+				.join(member.team, team)
+				.where(team.name.in("teamA", "teamB"))
+				.orderBy(team.name.asc()), PageRequest.of(1, 1));
+		Page<Member> members = pagedQueries.fetchPage(queryFactory
+				.selectDistinct(member)
+				.from(member)
+				.join(member.team, team)
+				.where(team.name.in("teamA", "teamB"))
+				.orderBy(member.username.asc()), PageRequest.of(1, 1));
+
+		assertThat(teamNames.getContent()).containsExactly("teamB");
+		assertThat(teamNames.getTotalElements()).isEqualTo(2);
+		assertThat(members.getTotalElements()).isEqualTo(4);
+	}
+
+	/**
+	 * 그룹 기준이 하나면 그룹을 모두 읽지 않고 count(distinct) 한 행으로 센다. 팀 없는 회원(null)도 한 그룹이다.
+	 */
+	@Test
+	public void groupedCountUsesCountDistinct() {
+		em.persist(new Member("noTeam", 50));
+		em.flush();
+
+		String count = pagedQueries.countQuery(queryFactory
+				.select(member.team.id, member.age.avg())
+				.from(member)
+				.groupBy(member.team.id)).toString();
+		Page<Long> teamIds = pagedQueries.fetchPage(queryFactory
+				.select(member.team.id)
+				.from(member)
+				.groupBy(member.team.id)
+				.orderBy(member.team.id.asc()), PageRequest.of(0, 1));
+
+		assertThat(count).contains("count(distinct member1.team.id)").doesNotContain("group by");
+		assertThat(teamIds.getTotalElements()).isEqualTo(3);
+	}
+
+	/**
+	 * 첫 페이지가 페이지 크기보다 작거나 마지막 페이지면 카운트 쿼리를 실행하지 않는다.
+	 */
+	@Test
+	public void countIsSkippedWhenTotalIsKnown() {
+		try (StatementScope scope = statementCounter.open("firstPage")) {
+			Page<Member> page = memberQueryRepository.searchPageWithTeam(null, PageRequest.of(0, 10));
+
+			assertThat(page.getTotalElements()).isEqualTo(4);
+			assertThat(scope.getStatementCount()).isEqualTo(1);
+		}
+		try (StatementScope scope = statementCounter.open("lastPage")) {
+			Page<Member> page = memberQueryRepository.searchPageWithTeam(null, PageRequest.of(1, 3));
+
+			assertThat(page.getContent()).extracting("username").containsExactly("member1");
+			assertThat(page.getTotalElements()).isEqualTo(4);
+			assertThat(scope.getStatementCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void countRunsForMiddlePage() {
+		try (StatementScope scope = statementCounter.open("middlePage")) {
+			Page<Member> page = memberQueryRepository.searchPageWithTeam("teamA", PageRequest.of(0, 1));
+
+			assertThat(page.getContent()).extracting("username").containsExactly("member2");
+			assertThat(page.getTotalElements()).isEqualTo(2);
+			assertThat(page.getTotalPages()).isEqualTo(2);
+			assertThat(scope.getStatementCount()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void cachedCount() {
+		pagedQueries.fetchPageWithCachedCount(queryFactory.selectFrom(member).where(member.age.gt(10)), PageRequest.of(0, 1));
+
+		try (StatementScope scope = statementCounter.open("cachedCount")) {
+			Page<Member> cached = pagedQueries.fetchPageWithCachedCount(
+					queryFactory.selectFrom(member).where(member.age.gt(10)), PageRequest.of(1, 1));
+			assertThat(cached.getTotalElements()).isEqualTo(3);
+			assertThat(scope.getStatementCount()).isEqualTo(1);
+		}
+		try (StatementScope scope = statementCounter.open("otherCondition")) {
+			Page<Member> other = pagedQueries.fetchPageWithCachedCount(
+					queryFactory.selectFrom(member).where(member.age.gt(20)), PageRequest.of(0, 1));
+			assertThat(other.getTotalElements()).isEqualTo(2);
+			assertThat(scope.getStatementCount()).isEqualTo(2);
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.DashboardDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.DashboardService;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 조회마다 별도 트랜잭션에서 실행되므로 커밋된 데이터만 보인다. 데이터는 직접 정리한다.
+ */
+@SpringBootTest
+class ParallelQueriesTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	@Autowired
+	ParallelQueries parallelQueries;
+
+	@Autowired
+	DashboardService dashboardService;
+
+	Long teamId;
+
+	@BeforeEach
+	public void before() {
+		teamId = tx.execute(status -> {
+			Team t = new Team("dashboardTeam");
+			em.persist(t);
+			em.persist(new Member("dashboard1", 10, t));
+			em.persist(new Member("dashboard2", 30, t));
+			return t.getId();
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).where(member.team.id.eq(teamId)).execute();
+			queryFactory.delete(team).where(team.id.eq(teamId)).execute();
+		});
+	}
+
+	@Test
+	public void dashboard() {
+		DashboardDto dashboard = dashboardService.dashboard();
+
+		assertThat(dashboard.getMemberCount()).isGreaterThanOrEqualTo(2);
+		assertThat(dashboard.getTeamAges())
+				.filteredOn(t -> t.getTeamName().equals("dashboardTeam"))
+				.extracting("averageAge")
+				.containsExactly(20.0);
+		assertThat(dashboard.getOlderThanAverageCount()).isLessThan(dashboard.getMemberCount());
+	}
+
+	/**
+	 * 각 조회는 자기 스레드의 EntityManager 를 쓰고, 전체 시간은 가장 느린 조회만큼 걸린다.
+	 */
+	@Test
+	public void runsInParallelOnSeparateEntityManagers() {
+		long start = System.nanoTime();
+		ParallelQueries.Scope scope = parallelQueries.open();
+		ParallelQueries.Result<SessionImplementor> first = scope.fork(queryFactory -> slowSession(300));
+		ParallelQueries.Result<SessionImplementor> second = scope.fork(queryFactory -> slowSession(300));
+		ParallelQueries.Result<SessionImplementor> third = scope.fork(queryFactory -> slowSession(300));
+		scope.join();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(elapsedMillis).isLessThan(800);
+		assertThat(first.get()).isNotSameAs(second.get()).isNotSameAs(third.get());
+		assertThat(second.get()).isNotSameAs(third.get());
+	}
+
+	@Test
+	public void deadlineCancelsRemainingQueries() throws InterruptedException {
+		CountDownLatch interrupted = new CountDownLatch(1);
+
+		ParallelQueries.Scope scope = parallelQueries.open(Duration.ofMillis(200));
+		scope.fork(queryFactory -> queryFactory
+				.select(member.count())
+				.from(member)
+				.fetchOne());
+		scope.fork(queryFactory -> {
+			try {
+				Thread.sleep(5_000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return null;
+		});
+
+		assertThatThrownBy(scope::join).isInstanceOf(QueryTimeoutException.class);
+		assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void failurePropagates() {
+		ParallelQueries.Scope scope = parallelQueries.open();
+		scope.fork(queryFactory -> queryFactory.selectFrom(member).fetch());
+		scope.fork(queryFactory -> {
+			throw new IllegalArgumentException("broken query");
+		});
+
+		assertThatThrownBy(scope::join)
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("broken query");
+	}
+
+	private SessionImplementor slowSession(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return em.unwrap(SessionImplementor.class);
+	}
+
+}
@@ -0,0 +1,128 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class ReadOnlyQueriesTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	ReadOnlyQueries readOnlyQueries;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("readOnlyTeamA");
+		Team teamB = new Team("readOnlyTeamB");
+		em.persist(teamA);
+		em.persist(teamB);
+
+		em.persist(new Member("readOnly1", 10, teamA));
+		em.persist(new Member("readOnly2", 20, teamA));
+		em.persist(new Member("readOnly3", 30, teamB));
+		em.persist(new Member("readOnly4", 40, teamB));
+		em.flush();
+		em.clear();
+	}
+
+	/**
+	 * 읽기 전용 엔티티는 스냅샷이 없고, 값을 바꿔도 플러시되지 않는다.
+	 */
+	@Test
+	public void readSkipsDirtyChecking() {
+		List<Member> members = readOnlyQueries.read(queryFactory -> queryFactory
+				.selectFrom(member)
+				.where(member.username.startsWith("readOnly"))
+				.fetch());
+
+		SessionImplementor session = em.unwrap(SessionImplementor.class);
+		assertThat(members).hasSize(4).allMatch(session::isReadOnly);
+		assertThat(members).allMatch(m -> session.getPersistenceContext().getEntry(m).getLoadedState() == null);
+		assertThat(session.isDefaultReadOnly()).isFalse();
+
+		members.get(0).setUsername("changed");
+		em.flush();
+		em.clear();
+
+		assertThat(em.find(Member.class, members.get(0).getId()).getUsername()).startsWith("readOnly");
+	}
+
+	@Test
+	public void readOnlyHint() {
+		Member found = ReadOnlyQueries.readOnly(new JPAQuery<Member>(em)
+				.select(member)
+				.from(member)
+				.where(member.username.eq("readOnly1")))
+				.fetchOne();
+
+		assertThat(em.unwrap(Session.class).isReadOnly(found)).isTrue();
+	}
+
+	@Test
+	public void groupInStatelessSession() {
+		List<Tuple> result = readOnlyQueries.stateless(session -> new HibernateQuery<Void>(session)
+				.select(team.name, member.age.avg())
+				.from(member)
+				.join(member.team, team)
+				.where(team.name.startsWith("readOnlyTeam"))
+				.groupBy(team.name)
+				.orderBy(team.name.asc())
+				.fetch());
+
+		assertThat(result).extracting(t -> t.get(team.name)).containsExactly("readOnlyTeamA", "readOnlyTeamB");
+		assertThat(result).extracting(t -> t.get(member.age.avg())).containsExactly(15.0, 35.0);
+	}
+
+	@Test
+	public void statelessEntitiesAreNotManaged() {
+		List<Member> members = readOnlyQueries.stateless(session -> new HibernateQuery<Void>(session)
+				.select(member)
+				.from(member)
+				.where(member.username.startsWith("readOnly"))
+				.fetch());
+
+		assertThat(members).hasSize(4).noneMatch(em::contains);
+	}
+
+	/**
+	 * ReplicaRoutingDataSource 가 보는 값
+	 */
+	@Test
+	public void readRunsInReadOnlyTransaction() {
+		TransactionTemplate notSupported = new TransactionTemplate(transactionManager);
+		notSupported.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+
+		Boolean readOnly = notSupported.execute(status -> readOnlyQueries.read(queryFactory ->
+				TransactionSynchronizationManager.isCurrentTransactionReadOnly()));
+
+		assertThat(readOnly).isTrue();
+	}
+
+}
@@ -0,0 +1,160 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Cache;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.StatementCounter;
+import study.querydsl.monitor.StatementScope;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 2차 캐시는 커밋된 데이터만 담기 때문에 트랜잭션을 나눠서 실행하고, 끝나면 직접 정리한다.
+ */
+@SpringBootTest
+class TeamQueryRepositoryTest {
+
+	static final String MEMBERS_ROLE = Team.class.getName() + ".members";
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	EntityManagerFactory emf;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TeamQueryRepository teamQueryRepository;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	Long teamId;
+	List<Long> createdTeamIds = new ArrayList<>();
+
+	@BeforeEach
+	public void before() {
+		teamId = createTeam("cachedTeam", 2);
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).where(member.team.id.in(createdTeamIds)).execute();
+			queryFactory.delete(team).where(team.id.in(createdTeamIds)).execute();
+		});
+		emf.getCache().evictAll();
+	}
+
+	@Test
+	public void teamIsCachedAfterLoad() {
+		tx.executeWithoutResult(status -> Hibernate.initialize(em.find(Team.class, teamId).getMembers()));
+
+		assertThat(cache().containsEntity(Team.class, teamId)).isTrue();
+		//Member 가 캐시 대상이 아니므로 회원 컬렉션은 캐시하지 않는다.
+		assertThat(cache().containsCollection(MEMBERS_ROLE, teamId)).isFalse();
+	}
+
+	@Test
+	public void bulkUpdateEvictsTeamRegionAndQueryCache() {
+		tx.executeWithoutResult(status -> teamQueryRepository.findByName("cachedTeam"));
+		assertThat(cache().containsEntity(Team.class, teamId)).isTrue();
+
+		tx.executeWithoutResult(status -> queryFactory
+				.update(team)
+				.set(team.name, "renamedTeam")
+				.where(team.id.eq(teamId))
+				.execute());
+
+		assertThat(cache().containsEntity(Team.class, teamId)).isFalse();
+		tx.executeWithoutResult(status -> {
+			assertThat(teamQueryRepository.findByName("cachedTeam")).isNull();
+			assertThat(teamQueryRepository.findByName("renamedTeam").getId()).isEqualTo(teamId);
+		});
+	}
+
+	@Test
+	public void bulkDeleteOfMembersIsVisibleThroughCachedTeam() {
+		tx.executeWithoutResult(status -> Hibernate.initialize(em.find(Team.class, teamId).getMembers()));
+		assertThat(cache().containsEntity(Team.class, teamId)).isTrue();
+
+		tx.executeWithoutResult(status -> queryFactory
+				.delete(member)
+				.where(member.username.eq("cachedMember1"))
+				.execute());
+
+		List<String> usernames = tx.execute(status -> {
+			List<String> result = new ArrayList<>();
+			em.find(Team.class, teamId).getMembers().forEach(m -> result.add(m.getUsername()));
+			return result;
+		});
+		assertThat(usernames).containsExactly("cachedMember2");
+	}
+
+	/**
+	 * 회원 컬렉션은 팀마다 따로 읽지 않고 IN 배치로 읽으며, 팀 행이 중복되지 않는다.
+	 * 전체 문장 수는 DB 에 있는 팀 수와 default_batch_fetch_size 에 따라 달라지므로 반복 여부만 확인한다.
+	 */
+	@Test
+	public void findAllWithMembersUsesBatchFetch() {
+		for (int i = 0; i < 5; i++) {
+			createTeam("batchTeam" + i, 3);
+		}
+		//다른 테스트가 남긴 team 리전/쿼리 캐시에 따라 문장 수가 달라지지 않도록 비운다.
+		cache().evictAllRegions();
+
+		tx.executeWithoutResult(status -> {
+			try (StatementScope scope = statementCounter.open("findAllWithMembers")) {
+				List<Team> teams = teamQueryRepository.findAllWithMembers();
+				int memberCount = 0;
+				for (Team t : teams) {
+					memberCount += t.getMembers().size();
+				}
+
+				assertThat(teams).extracting("id").doesNotHaveDuplicates().containsAll(createdTeamIds);
+				assertThat(memberCount).isGreaterThanOrEqualTo(2 + 5 * 3);
+				assertThat(scope.getStatementCount()).isLessThan(teams.size());
+				scope.assertRepeatedAtMost(1);
+			}
+		});
+	}
+
+	private Long createTeam(String name, int memberCount) {
+		Long id = tx.execute(status -> {
+			Team t = new Team(name);
+			em.persist(t);
+			for (int i = 1; i <= memberCount; i++) {
+				em.persist(new Member(name.replace("Team", "Member") + i, 10 * i, t));
+			}
+			return t.getId();
+		});
+		createdTeamIds.add(id);
+		return id;
+	}
+
+	private Cache cache() {
+		return emf.unwrap(SessionFactory.class).getCache();
+	}
+
+}
@@ -0,0 +1,61 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberBatchServiceTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberBatchService memberBatchService;
+
+	Team team;
+
+	@BeforeEach
+	public void before() {
+		team = new Team("batchTeam");
+		em.persist(team);
+		em.flush();
+	}
+
+	@Test
+	public void saveAll() {
+		int saved = memberBatchService.saveAll(members("batch", 250));
+
+		assertThat(saved).isEqualTo(250);
+		assertThat(countByPrefix("batch")).isEqualTo(250);
+		//batch_size 마다 clear 되므로 영속성 컨텍스트에 남아있지 않다.
+		assertThat(em.contains(team)).isFalse();
+	}
+
+	private List<Member> members(String prefix, int size) {
+		Team managedTeam = em.getReference(Team.class, team.getId());
+		List<Member> members = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			members.add(new Member(prefix + i, i % 100, managedTeam));
+		}
+		return members;
+	}
+
+	private long countByPrefix(String prefix) {
+		return em.createQuery("select count(m) from Member m where m.username like :prefix", Long.class)
+				.setParameter("prefix", prefix + "%")
+				.getSingleResult();
+	}
+
+}
@@ -0,0 +1,86 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberUpdateDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.StatementCounter;
+import study.querydsl.monitor.StatementScope;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Transactional
+class MemberBulkUpdateServiceTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	MemberBulkUpdateService memberBulkUpdateService;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	List<Member> members = new ArrayList<>();
+
+	@BeforeEach
+	public void before() {
+		Team teamA = new Team("teamA");
+		em.persist(teamA);
+		for (int i = 0; i < 4; i++) {
+			Member m = new Member("bulk" + i, 10 * (i + 1), teamA);
+			em.persist(m);
+			members.add(m);
+		}
+		em.flush();
+	}
+
+	@Test
+	public void updateAll() {
+		long affected = memberBulkUpdateService.updateAll(Arrays.asList(
+				new MemberUpdateDto(members.get(0).getId(), "renamed0", 11),
+				new MemberUpdateDto(members.get(1).getId(), null, 11),
+				new MemberUpdateDto(members.get(2).getId(), "renamed2", null),
+				new MemberUpdateDto(members.get(3).getId(), null, null)));
+
+		assertThat(affected).isEqualTo(3);
+
+		//영속 상태의 엔티티도 DB 값과 같아진다. (em.clear 불필요)
+		assertThat(members).extracting("username", "age").containsExactly(
+				tuple("renamed0", 11),
+				tuple("bulk1", 11),
+				tuple("renamed2", 30),
+				tuple("bulk3", 40));
+
+		em.clear();
+		assertThat(em.find(Member.class, members.get(2).getId()).getAge()).isEqualTo(30);
+		assertThat(em.find(Member.class, members.get(1).getId()).getUsername()).isEqualTo("bulk1");
+	}
+
+	/*청크 크기(500) 안의 변경은 UPDATE 한 문장으로 실행된다. (나머지 한 문장은 team_stats 를 다시 계산할 팀 조회)*/
+	@Test
+	public void oneStatementPerChunk() {
+		List<MemberUpdateDto> updates = new ArrayList<>();
+		for (Member m : members) {
+			updates.add(new MemberUpdateDto(m.getId(), null, m.getAge() + 1));
+		}
+		em.clear();
+
+		try (StatementScope scope = statementCounter.open("bulkUpdate")) {
+			assertThat(memberBulkUpdateService.updateAll(updates)).isEqualTo(4);
+			assertThat(scope.getStatementCount()).isEqualTo(2);
+		}
+	}
+
+}
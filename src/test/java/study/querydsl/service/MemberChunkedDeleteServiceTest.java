@@ -0,0 +1,165 @@
+package study.querydsl.service;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.ChunkProgress;
+import study.querydsl.entity.BulkJobCheckpoint;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 청크마다 커밋하므로 트랜잭션을 직접 나눠서 데이터를 넣고, 끝나면 직접 정리한다.
+ */
+@SpringBootTest
+class MemberChunkedDeleteServiceTest {
+
+	static final String JOB = "deleteAdults";
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	@Autowired
+	MemberChunkedDeleteService memberChunkedDeleteService;
+
+	Long teamId;
+
+	@BeforeEach
+	public void before() {
+		teamId = tx.execute(status -> {
+			Team t = new Team("chunkTeam");
+			em.persist(t);
+			//성인 10명, 미성년 5명
+			for (int i = 0; i < 15; i++) {
+				em.persist(new Member("chunk" + i, i < 10 ? 20 + i : 10, t));
+			}
+			return t.getId();
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).where(member.team.id.eq(teamId)).execute();
+			queryFactory.delete(team).where(team.id.eq(teamId)).execute();
+			BulkJobCheckpoint checkpoint = em.find(BulkJobCheckpoint.class, JOB);
+			if (checkpoint != null) {
+				em.remove(checkpoint);
+			}
+		});
+	}
+
+	@Test
+	public void deleteInChunks() {
+		List<ChunkProgress> progresses = new ArrayList<>();
+
+		ChunkProgress result = memberChunkedDeleteService.delete(JOB, adultsOfTeam(), 3, Duration.ZERO, progresses::add);
+
+		assertThat(result.isCompleted()).isTrue();
+		assertThat(result.getChunks()).isEqualTo(4);
+		assertThat(result.getProcessedCount()).isEqualTo(10);
+		assertThat(progresses).extracting("processedCount").containsExactly(3L, 6L, 9L, 10L);
+		assertThat(remainingAges()).hasSize(5).allMatch(age -> age <= 18);
+		assertThat(checkpoint()).isNull();
+	}
+
+	/**
+	 * 중간에 실패해도 커밋된 청크와 체크포인트는 남고, 같은 jobName 으로 다시 실행하면 이어서 지운다.
+	 */
+	@Test
+	public void resumeFromCheckpoint() {
+		assertThatThrownBy(() -> memberChunkedDeleteService.delete(JOB, adultsOfTeam(), 3, Duration.ZERO, progress -> {
+			if (progress.getChunks() == 2) {
+				throw new IllegalStateException("crash");
+			}
+		})).isInstanceOf(IllegalStateException.class);
+
+		BulkJobCheckpoint checkpoint = checkpoint();
+		assertThat(checkpoint.getProcessedCount()).isEqualTo(6);
+		assertThat(remainingAges()).hasSize(9);
+
+		ChunkProgress result = memberChunkedDeleteService.delete(JOB, adultsOfTeam(), 3, Duration.ofMillis(1));
+
+		assertThat(result.isCompleted()).isTrue();
+		assertThat(result.getChunks()).isEqualTo(2);
+		assertThat(result.getProcessedCount()).isEqualTo(10);
+		//초당 처리 건수는 이번 실행에서 지운 건수 기준
+		assertThat(result.getRunProcessedCount()).isEqualTo(4);
+		assertThat(remainingAges()).hasSize(5).allMatch(age -> age <= 18);
+		assertThat(checkpoint()).isNull();
+	}
+
+	/**
+	 * 같은 jobName 이라도 조건이 다르면 남은 체크포인트 위치부터 이어서 지우지 않는다.
+	 */
+	@Test
+	public void rejectCheckpointOfAnotherCondition() {
+		assertThatThrownBy(() -> memberChunkedDeleteService.delete(JOB, adultsOfTeam(), 3, Duration.ZERO, progress -> {
+			throw new IllegalStateException("crash");
+		})).hasMessage("crash");
+
+		assertThatThrownBy(() -> memberChunkedDeleteService.delete(JOB, member.team.id.eq(teamId), 3, Duration.ZERO))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("belongs to another job");
+		assertThat(remainingAges()).hasSize(12);
+	}
+
+	/**
+	 * 청크 ID 를 고른 뒤 삭제 전에 다른 트랜잭션이 조건에서 빠지게 바꾼 회원은 지우지 않는다.
+	 */
+	@Test
+	public void rowChangedAfterSelectSurvives() {
+		List<Long> ids = tx.execute(status -> queryFactory
+				.select(member.id)
+				.from(member)
+				.where(adultsOfTeam())
+				.orderBy(member.id.asc())
+				.limit(3)
+				.fetch());
+		tx.executeWithoutResult(status -> em.find(Member.class, ids.get(0)).setAge(15));
+
+		Long deleted = tx.execute(status -> memberChunkedDeleteService.deleteSelected(ids, adultsOfTeam()));
+
+		assertThat(deleted).isEqualTo(2);
+		assertThat(tx.execute(status -> em.find(Member.class, ids.get(0)))).isNotNull();
+		assertThat(remainingAges()).hasSize(13);
+	}
+
+	private Predicate adultsOfTeam() {
+		return member.team.id.eq(teamId).and(member.age.gt(18));
+	}
+
+	private List<Integer> remainingAges() {
+		return tx.execute(status -> queryFactory
+				.select(member.age)
+				.from(member)
+				.where(member.team.id.eq(teamId))
+				.fetch());
+	}
+
+	private BulkJobCheckpoint checkpoint() {
+		return tx.execute(status -> em.find(BulkJobCheckpoint.class, JOB));
+	}
+
+}
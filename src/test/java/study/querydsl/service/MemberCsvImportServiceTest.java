@@ -0,0 +1,222 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.ChunkProgress;
+import study.querydsl.entity.BulkJobCheckpoint;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.TeamStats;
+import study.querydsl.stats.TeamStatsService;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 배치마다 커밋하므로 트랜잭션 없이 실행하고, 끝나면 직접 정리한다.
+ * 행 수는 파일 버퍼(64KB)를 여러 번 채우도록 정했다.
+ */
+@SpringBootTest
+class MemberCsvImportServiceTest {
+
+	static final String JOB = "importMembers";
+	static final int ROWS = 5_000;
+
+	@TempDir
+	Path dir;
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	@Autowired
+	MemberCsvImportService memberCsvImportService;
+
+	@Autowired
+	TeamStatsService teamStatsService;
+
+	Long existingTeamId;
+
+	@BeforeEach
+	public void before() {
+		existingTeamId = tx.execute(status -> {
+			Team t = new Team("csvTeamA");
+			em.persist(t);
+			em.persist(new Member("csvExisting", 99, t));
+			return t.getId();
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).where(member.username.startsWith("csv")).execute();
+			queryFactory.delete(team).where(team.name.startsWith("csvTeam")).execute();
+			BulkJobCheckpoint checkpoint = em.find(BulkJobCheckpoint.class, JOB);
+			if (checkpoint != null) {
+				em.remove(checkpoint);
+			}
+		});
+	}
+
+	/**
+	 * 기존 팀은 ID 로 찾고, 없는 팀은 만들고, 팀 이름이 비어 있으면 팀 없이 넣는다.
+	 */
+	@Test
+	public void importMembers() throws IOException {
+		Path file = write(ROWS);
+		List<ChunkProgress> progresses = new ArrayList<>();
+
+		ChunkProgress result = memberCsvImportService.importCsv(JOB, file, progresses::add);
+
+		assertThat(result.isCompleted()).isTrue();
+		assertThat(result.getChunks()).isEqualTo(5);
+		assertThat(result.getProcessedCount()).isEqualTo(ROWS);
+		assertThat(result.getPosition()).isEqualTo(Files.size(file));
+		assertThat(result.getRowsPerSecond()).isPositive();
+		assertThat(progresses).extracting("processedCount").containsExactly(1000L, 2000L, 3000L, 4000L, 5000L);
+		assertThat(checkpoint()).isNull();
+
+		assertThat(importedCount()).isEqualTo(ROWS);
+		assertThat(countByTeam("csvTeamA")).isEqualTo(ROWS / 3 + 2);
+		assertThat(countByTeam("csvTeamB")).isEqualTo(ROWS / 3 + 1);
+		assertThat(queryFactory.selectFrom(member).where(member.username.startsWith("csvImported"), member.team.isNull())
+				.fetchCount()).isEqualTo(ROWS / 3);
+		Integer quotedAge = queryFactory.select(member.age).from(member)
+				.where(member.username.eq("csvImported, \"7\"")).fetchOne();
+		assertThat(quotedAge).isEqualTo(7);
+	}
+
+	/**
+	 * 팀 집계는 배치마다 증감분으로 반영되어 실제 회원 집계와 같다.
+	 */
+	@Test
+	public void importUpdatesTeamStats() throws IOException {
+		memberCsvImportService.importCsv(JOB, write(ROWS));
+
+		TeamStats stats = tx.execute(status -> teamStatsService.findByTeamId(existingTeamId));
+		Integer maxAge = tx.execute(status -> queryFactory.select(member.age.max()).from(member)
+				.where(member.team.id.eq(existingTeamId)).fetchOne());
+		Integer ageSum = tx.execute(status -> queryFactory.select(member.age.sum()).from(member)
+				.where(member.team.id.eq(existingTeamId)).fetchOne());
+
+		assertThat(stats.getMemberCount()).isEqualTo(countByTeam("csvTeamA"));
+		assertThat(stats.getAgeSum()).isEqualTo(ageSum.longValue());
+		assertThat(stats.getMinAge()).isEqualTo(0);
+		assertThat(stats.getMaxAge()).isEqualTo(maxAge);
+	}
+
+	/**
+	 * 중간에 실패해도 커밋된 배치와 체크포인트는 남고, 같은 jobName 으로 다시 실행하면 다음 줄부터 이어서 넣는다.
+	 */
+	@Test
+	public void resumeFromCheckpoint() throws IOException {
+		Path file = write(ROWS);
+
+		assertThatThrownBy(() -> memberCsvImportService.importCsv(JOB, file, progress -> {
+			if (progress.getChunks() == 2) {
+				throw new IllegalStateException("stop");
+			}
+		})).isInstanceOf(IllegalStateException.class);
+
+		BulkJobCheckpoint checkpoint = checkpoint();
+		assertThat(checkpoint.getProcessedCount()).isEqualTo(2000);
+		assertThat(importedCount()).isEqualTo(2000);
+
+		ChunkProgress result = memberCsvImportService.importCsv(JOB, file);
+
+		assertThat(result.isCompleted()).isTrue();
+		assertThat(result.getChunks()).isEqualTo(3);
+		assertThat(result.getProcessedCount()).isEqualTo(ROWS);
+		assertThat(result.getRunProcessedCount()).isEqualTo(ROWS - 2000);
+		assertThat(importedCount()).isEqualTo(ROWS);
+		assertThat(queryFactory.select(member.username).from(member).where(member.username.startsWith("csvImported"))
+				.fetch()).doesNotHaveDuplicates();
+		assertThat(checkpoint()).isNull();
+	}
+
+	/**
+	 * 체크포인트를 남긴 뒤 파일이 바뀌면 이어서 넣지 않는다.
+	 */
+	@Test
+	public void rejectCheckpointOfChangedFile() throws IOException {
+		Path file = write(ROWS);
+		assertThatThrownBy(() -> memberCsvImportService.importCsv(JOB, file, progress -> {
+			throw new IllegalStateException("stop");
+		})).hasMessage("stop");
+
+		Files.write(file, "csvAppended,1,\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		assertThatThrownBy(() -> memberCsvImportService.importCsv(JOB, file))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("belongs to another job");
+		assertThat(importedCount()).isEqualTo(1000);
+	}
+
+	/**
+	 * 잘못된 행이 있는 배치는 커밋되지 않고, 예외 메시지로 행의 파일 위치를 알려준다.
+	 */
+	@Test
+	public void invalidRowStopsImport() throws IOException {
+		StringBuilder csv = new StringBuilder("username,age,teamName\n");
+		for (int i = 0; i < 1500; i++) {
+			csv.append("csvImported").append(i).append(',').append(i == 1200 ? "x" : "20").append(",csvTeamA\n");
+		}
+		Path file = Files.write(dir.resolve("invalid.csv"), csv.toString().getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> memberCsvImportService.importCsv(JOB, file))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageStartingWith("invalid age at offset");
+
+		assertThat(importedCount()).isEqualTo(1000);
+		assertThat(checkpoint().getProcessedCount()).isEqualTo(1000);
+	}
+
+	/**
+	 * 3행마다 csvTeamA, csvTeamB, 팀 없음, 일부 이름은 쉼표와 따옴표를 포함한다.
+	 */
+	private Path write(int rows) throws IOException {
+		StringBuilder csv = new StringBuilder("username,age,teamName\r\n");
+		for (int i = 0; i < rows; i++) {
+			String username = i % 100 == 7 ? "\"csvImported, \"\"" + i + "\"\"\"" : "csvImported" + i;
+			String teamName = i % 3 == 0 ? "csvTeamA" : i % 3 == 1 ? "\"csvTeamB\"" : "";
+			csv.append(username).append(',').append(i % 80).append(',').append(teamName).append("\r\n");
+		}
+		return Files.write(dir.resolve("members.csv"), csv.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private long importedCount() {
+		return queryFactory.selectFrom(member).where(member.username.startsWith("csvImported")).fetchCount();
+	}
+
+	private long countByTeam(String teamName) {
+		return queryFactory.selectFrom(member).where(member.team.name.eq(teamName)).fetchCount();
+	}
+
+	private BulkJobCheckpoint checkpoint() {
+		return tx.execute(status -> em.find(BulkJobCheckpoint.class, JOB));
+	}
+
+}
@@ -0,0 +1,280 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.StatementCounter;
+import study.querydsl.monitor.StatementScope;
+import study.querydsl.stats.TeamStatsService;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 여러 스레드가 같은 회원을 동시에 고치므로 트랜잭션을 직접 나눠서 데이터를 넣고, 끝나면 직접 정리한다.
+ */
+@SpringBootTest
+class MemberUpdateServiceTest {
+
+	static final int THREADS = 4;
+	static final int UPDATES_PER_THREAD = 25;
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	JPAQueryFactory queryFactory;
+
+	@Autowired
+	TransactionTemplate tx;
+
+	@Autowired
+	MemberUpdateService memberUpdateService;
+
+	@Autowired
+	OptimisticRetryExecutor retryExecutor;
+
+	@Autowired
+	TeamStatsService teamStatsService;
+
+	@Autowired
+	StatementCounter statementCounter;
+
+	List<Long> teamIds = new ArrayList<>();
+	Long memberId;
+
+	@BeforeEach
+	public void before() {
+		memberId = tx.execute(status -> {
+			Team teamA = new Team("versionTeamA");
+			Team teamB = new Team("versionTeamB");
+			em.persist(teamA);
+			em.persist(teamB);
+			teamIds.add(teamA.getId());
+			teamIds.add(teamB.getId());
+			Member m = new Member("versioned", 0, teamA);
+			em.persist(m);
+			return m.getId();
+		});
+	}
+
+	@AfterEach
+	public void after() {
+		tx.executeWithoutResult(status -> {
+			queryFactory.delete(member).where(member.team.id.in(teamIds)).execute();
+			queryFactory.delete(team).where(team.id.in(teamIds)).execute();
+		});
+	}
+
+	/**
+	 * 충돌한 변경은 최신 값으로 다시 실행되므로 모든 증가분이 남는다.
+	 */
+	@Test
+	public void concurrentUpdatesAreNotLost() throws Exception {
+		long exhaustedBefore = retryExecutor.getExhaustedCount();
+
+		runConcurrently(() -> memberUpdateService.addAge(memberId, 1));
+
+		assertThat(findMember().getAge()).isEqualTo(THREADS * UPDATES_PER_THREAD);
+		assertThat(retryExecutor.getExhaustedCount()).isEqualTo(exhaustedBefore);
+	}
+
+	/**
+	 * 재시도하지 않아도 충돌한 쪽은 예외로 드러나고, 성공한 변경만 정확히 반영된다. (덮어쓰기 없음)
+	 */
+	@Test
+	public void conflictsFailInsteadOfOverwriting() throws Exception {
+		AtomicInteger succeeded = new AtomicInteger();
+		AtomicInteger conflicted = new AtomicInteger();
+
+		runConcurrently(() -> {
+			try {
+				tx.executeWithoutResult(status -> {
+					Member m = em.find(Member.class, memberId);
+					m.setAge(m.getAge() + 1);
+				});
+				succeeded.incrementAndGet();
+			} catch (OptimisticLockingFailureException e) {
+				conflicted.incrementAndGet();
+			}
+		});
+
+		assertThat(succeeded.get() + conflicted.get()).isEqualTo(THREADS * UPDATES_PER_THREAD);
+		assertThat(findMember().getAge()).isEqualTo(succeeded.get());
+	}
+
+	@Test
+	public void changeTeamBumpsMemberVersionOnly() {
+		Long teamBVersion = tx.execute(status -> em.find(Team.class, teamIds.get(1)).getVersion());
+		Long memberVersion = findMember().getVersion();
+
+		memberUpdateService.changeTeam(memberId, teamIds.get(1));
+
+		Member moved = tx.execute(status -> {
+			Member m = em.find(Member.class, memberId);
+			m.getTeam().getId();
+			return m;
+		});
+		assertThat(moved.getTeam().getId()).isEqualTo(teamIds.get(1));
+		assertThat(moved.getVersion()).isEqualTo(memberVersion + 1);
+		Long teamBVersionAfter = tx.execute(status -> em.find(Team.class, teamIds.get(1)).getVersion());
+		assertThat(teamBVersionAfter).isEqualTo(teamBVersion);
+	}
+
+	/**
+	 * 회원이 많은 팀에서 옮겨도 양쪽 팀 컬렉션은 초기화되지 않고, count/존재 확인 쿼리로 결과를 확인할 수 있다.
+	 */
+	@Test
+	public void changeTeamDoesNotLoadMembersCollection() {
+		tx.executeWithoutResult(status -> {
+			Team teamA = em.find(Team.class, teamIds.get(0));
+			for (int i = 0; i < 30; i++) {
+				em.persist(new Member("crowd" + i, 20, teamA));
+			}
+		});
+
+		tx.executeWithoutResult(status -> {
+			Team teamA = em.find(Team.class, teamIds.get(0));
+			Team teamB = em.find(Team.class, teamIds.get(1));
+			Member m = em.find(Member.class, memberId);
+
+			m.changeTeam(teamB);
+			em.flush();
+
+			assertThat(Hibernate.isInitialized(teamA.getMembers())).isFalse();
+			assertThat(Hibernate.isInitialized(teamB.getMembers())).isFalse();
+			assertThat(teamA.getMembers().size()).isEqualTo(30);
+			assertThat(teamA.getMembers().contains(m)).isFalse();
+			assertThat(teamB.getMembers().contains(m)).isTrue();
+			assertThat(Hibernate.isInitialized(teamA.getMembers())).isFalse();
+		});
+	}
+
+	/**
+	 * 초기화되지 않은 컬렉션은 고치지 않고, 컬렉션 초기화는 자동 flush 를 하지 않는다.
+	 * 같은 영속성 컨텍스트에서 flush 전에 처음 읽으면 옮긴 회원이 빠져 있고, flush 후에 읽으면 보인다.
+	 */
+	@Test
+	public void unflushedMoveIsMissingFromLaterLoadedCollection() {
+		tx.executeWithoutResult(status -> {
+			Team teamB = em.find(Team.class, teamIds.get(1));
+			Member m = em.find(Member.class, memberId);
+
+			m.changeTeam(teamB);
+			Hibernate.initialize(teamB.getMembers());
+
+			assertThat(teamB.getMembers()).doesNotContain(m);
+			status.setRollbackOnly();
+		});
+
+		tx.executeWithoutResult(status -> {
+			Team teamB = em.find(Team.class, teamIds.get(1));
+			Member m = em.find(Member.class, memberId);
+
+			m.changeTeam(teamB);
+			em.flush();
+			Hibernate.initialize(teamB.getMembers());
+
+			assertThat(teamB.getMembers()).containsExactly(m);
+			status.setRollbackOnly();
+		});
+	}
+
+	/**
+	 * 이미 초기화된 컬렉션은 메모리에서도 바로 양쪽이 맞춰진다.
+	 */
+	@Test
+	public void changeTeamKeepsLoadedCollectionsConsistent() {
+		tx.executeWithoutResult(status -> {
+			Team teamA = em.find(Team.class, teamIds.get(0));
+			Team teamB = em.find(Team.class, teamIds.get(1));
+			Hibernate.initialize(teamA.getMembers());
+			Hibernate.initialize(teamB.getMembers());
+			Member m = em.find(Member.class, memberId);
+
+			m.changeTeam(teamB);
+
+			assertThat(teamA.getMembers()).doesNotContain(m);
+			assertThat(teamB.getMembers()).containsExactly(m);
+		});
+	}
+
+	/**
+	 * 초기화되지 않은 팀 컬렉션을 건드리지 않으므로 회원 수와 관계없이 SELECT/UPDATE 문장 수가 일정하다.
+	 * (회원마다 존재 확인 SELECT 나 flush 가 일어나면 같은 문장이 회원 수만큼 반복된다)
+	 */
+	@Test
+	public void moveToTeam() {
+		int moving = 20;
+		List<Long> ids = tx.execute(status -> {
+			Team teamA = em.find(Team.class, teamIds.get(0));
+			List<Long> result = new ArrayList<>();
+			for (int i = 0; i < moving; i++) {
+				Member m = new Member("moving" + i, 30, teamA);
+				em.persist(m);
+				result.add(m.getId());
+			}
+			return result;
+		});
+
+		try (StatementScope scope = statementCounter.open("moveToTeam")) {
+			assertThat(memberUpdateService.moveToTeam(ids, teamIds.get(1))).isEqualTo(moving);
+
+			assertThat(scope.getStatementCount()).isLessThan(moving);
+			scope.assertRepeatedAtMost(2);
+		}
+
+		tx.executeWithoutResult(status -> {
+			assertThat(em.find(Team.class, teamIds.get(0)).getMembers()).hasSize(1);
+			assertThat(em.find(Team.class, teamIds.get(1)).getMembers()).hasSize(moving);
+			assertThat(teamStatsService.findByTeamId(teamIds.get(1)).getMemberCount()).isEqualTo(moving);
+		});
+	}
+
+	private Member findMember() {
+		return tx.execute(status -> em.find(Member.class, memberId));
+	}
+
+	private void runConcurrently(Runnable update) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+						update.run();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package study.querydsl.stats;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberUpdateDto;
+import study.querydsl.dto.TeamAgeDto;
+import study.querydsl.dto.TeamStatsReconciliation;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.entity.TeamStats;
+import study.querydsl.service.MemberBulkUpdateService;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Transactional
+class TeamStatsServiceTest {
+
+	@Autowired
+	EntityManager em;
+
+	@Autowired
+	TeamStatsService teamStatsService;
+
+	@Autowired
+	MemberBulkUpdateService memberBulkUpdateService;
+
+	Team teamA;
+	Team teamB;
+	Member member1;
+	Member member2;
+	Member member3;
+
+	@BeforeEach
+	public void before() {
+		teamA = new Team("statsTeamA");
+		teamB = new Team("statsTeamB");
+		em.persist(teamA);
+		em.persist(teamB);
+		member1 = new Member("stats1", 10, teamA);
+		member2 = new Member("stats2", 20, teamA);
+		member3 = new Member("stats3", 30, teamB);
+		em.persist(member1);
+		em.persist(member2);
+		em.persist(member3);
+		em.flush();
+	}
+
+	@Test
+	public void insertUpdatesStats() {
+		assertStats(teamA, 2, 30, 10, 20);
+		assertStats(teamB, 1, 30, 30, 30);
+
+		em.persist(new Member("stats4", 5, teamA));
+		em.flush();
+
+		assertStats(teamA, 3, 35, 5, 20);
+	}
+
+	@Test
+	public void changeTeamMovesMemberBetweenStats() {
+		member2.changeTeam(teamB);
+		em.flush();
+
+		assertStats(teamA, 1, 10, 10, 10);
+		assertStats(teamB, 2, 50, 20, 30);
+	}
+
+	@Test
+	public void ageChangeAndDelete() {
+		member1.setAge(40);
+		em.flush();
+		assertStats(teamA, 2, 60, 20, 40);
+
+		em.remove(member2);
+		em.flush();
+		//빠진 회원의 나이는 min/max 를 다시 계산해야 알 수 있다.
+		assertStats(teamA, 1, 40, 40, 40);
+	}
+
+	@Test
+	public void bulkUpdateRecomputesStats() {
+		memberBulkUpdateService.updateAll(Arrays.asList(
+				new MemberUpdateDto(member1.getId(), null, 50),
+				new MemberUpdateDto(member3.getId(), null, 60)));
+
+		assertStats(teamA, 2, 70, 20, 50);
+		assertStats(teamB, 1, 60, 60, 60);
+	}
+
+	@Test
+	public void teamAgesReadsStats() {
+		assertThat(teamStatsService.teamAges())
+				.filteredOn(t -> t.getTeamName().startsWith("statsTeam"))
+				.extracting(TeamAgeDto::getTeamName, TeamAgeDto::getAverageAge)
+				.containsExactly(
+						tuple("statsTeamA", 15.0),
+						tuple("statsTeamB", 30.0));
+	}
+
+	@Test
+	public void reconcileFindsAndRepairsMismatch() {
+		em.createNativeQuery("update team_stats set member_count = 99 where team_id = ?")
+				.setParameter(1, teamA.getId())
+				.executeUpdate();
+
+		TeamStatsReconciliation found = teamStatsService.reconcile(false);
+		assertThat(found.getMismatchedTeamIds()).contains(teamA.getId()).doesNotContain(teamB.getId());
+
+		teamStatsService.reconcile(true);
+		assertThat(teamStatsService.reconcile(false).isConsistent()).isTrue();
+		assertStats(teamA, 2, 30, 10, 20);
+	}
+
+	@Test
+	public void rebuild() {
+		teamStatsService.rebuild();
+
+		assertStats(teamA, 2, 30, 10, 20);
+		assertThat(teamStatsService.reconcile(false).isConsistent()).isTrue();
+	}
+
+	private void assertStats(Team team, long count, long ageSum, int minAge, int maxAge) {
+		TeamStats stats = teamStatsService.findByTeamId(team.getId());
+		assertThat(stats.getMemberCount()).isEqualTo(count);
+		assertThat(stats.getAgeSum()).isEqualTo(ageSum);
+		assertThat(stats.getMinAge()).isEqualTo(minAge);
+		assertThat(stats.getMaxAge()).isEqualTo(maxAge);
+		assertThat(stats.isRangeStale()).isFalse();
+	}
+
+}